@@ -3,21 +3,25 @@
  */
 package com.codealike.client.eclipse.api;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
-import com.codealike.client.eclipse.internal.dto.ActivityInfo;
 import com.codealike.client.eclipse.internal.dto.PluginSettingsInfo;
 import com.codealike.client.eclipse.internal.dto.ProfileInfo;
 import com.codealike.client.eclipse.internal.dto.SolutionContextInfo;
 import com.codealike.client.eclipse.internal.dto.UserConfigurationInfo;
+import com.codealike.client.eclipse.internal.serialization.JsonCodecs;
+import com.codealike.client.eclipse.internal.serialization.PayloadBuffer;
 import com.codealike.client.eclipse.internal.startup.PluginContext;
+import com.codealike.client.eclipse.internal.utils.LogManager;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
-import com.fasterxml.jackson.datatype.joda.JodaModule;
 import com.mashape.unirest.http.HttpResponse;
 import com.mashape.unirest.http.Unirest;
+import com.mashape.unirest.request.HttpRequestWithBody;
 
 /**
  * Api class to communicate with Codealike server.
@@ -30,13 +34,14 @@ public class ApiClient {
 	private static final String X_EAUTH_CLIENT_HEADER = "X-Eauth-Client";
 	private static final String X_EAUTH_TOKEN_HEADER = "X-Api-Token";
 	private static final String X_EAUTH_IDENTITY_HEADER = "X-Api-Identity";
+	private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+	private static final String GZIP_ENCODING = "gzip";
 
 	// Number of API retries
 	public static final int MAX_RETRIES = 5;
 
 	private String identity;
 	private String token;
-	private ObjectMapper mapper;
 
 	/**
 	 * Create a new API client.
@@ -79,9 +84,6 @@ public class ApiClient {
 	protected ApiClient() {
 		this.identity = "";
 		this.token = "";
-
-		mapper = new ObjectMapper();
-		mapper.registerModule(new JodaModule());
 	}
 
 	/**
@@ -106,15 +108,14 @@ public class ApiClient {
 	 *         information
 	 */
 	public static ApiResponse<PluginSettingsInfo> getPluginSettings() {
-		ObjectMapper mapper = new ObjectMapper();
-
 		try {
 			HttpResponse<String> response = Unirest.get("https://codealike.com/api/v2/public/PluginsConfiguration")
 					.header("accept", "application/json").header("Content-Type", "application/json").asString();
 
 			if (response.getStatus() == 200) {
 				String cleanJson = response.getBody().substring(1, response.getBody().length() - 1).replace("\\", "");
-				PluginSettingsInfo responseObject = mapper.readValue(cleanJson, PluginSettingsInfo.class);
+				PluginSettingsInfo responseObject = JsonCodecs.getInstance().getPluginSettingsReader()
+						.readValue(cleanJson);
 				if (responseObject != null) {
 					return new ApiResponse<PluginSettingsInfo>(response.getStatus(), response.getStatusText(),
 							responseObject);
@@ -172,7 +173,7 @@ public class ApiClient {
 	public ApiResponse<String> registerProjectContext(UUID projectId, String name) {
 		try {
 			SolutionContextInfo solutionContext = new SolutionContextInfo(projectId, name);
-			ObjectWriter writer = PluginContext.getInstance().getJsonWriter();
+			ObjectWriter writer = JsonCodecs.getInstance().getSolutionContextWriter();
 			String solutionAsJson = writer.writeValueAsString(solutionContext);
 
 			return doPost("solution", String.class, solutionAsJson);
@@ -183,21 +184,13 @@ public class ApiClient {
 	}
 
 	/**
-	 * Post project activity information.
+	 * Post project activity information already serialized as JSON.
 	 *
-	 * @param info the activity information object
+	 * @param payload the buffer holding the serialized activity information
 	 * @return the {@link ApiResponse} instance
 	 */
-	public ApiResponse<String> postActivityInfo(ActivityInfo info) {
-		try {
-			ObjectWriter writer = PluginContext.getInstance().getJsonWriter();
-			String activityInfoAsJson = writer.writeValueAsString(info);
-
-			return doPost("activity", String.class, activityInfoAsJson);
-		} catch (JsonProcessingException e) {
-			return new ApiResponse<String>(ApiResponse.Status.ClientError,
-					String.format("Problem parsing data from the server. %s", e.getMessage()));
-		}
+	public ApiResponse<String> postActivityInfo(PayloadBuffer payload) {
+		return doPost("activity", String.class, payload);
 	}
 
 	/**
@@ -228,7 +221,7 @@ public class ApiClient {
 			if (response.getStatus() == 200) {
 				T responseObject = null;
 				if (type != String.class) {
-					responseObject = mapper.readValue(response.getBody(), type);
+					responseObject = JsonCodecs.getInstance().getApiReader(type).readValue(response.getBody());
 				} else {
 					responseObject = (T) "OK";
 				}
@@ -250,8 +243,62 @@ public class ApiClient {
 	}
 
 	/**
-	 * Private method to do an API POST.
+	 * Private method to do an API POST. The payload is sent gzip compressed at
+	 * the configured level if the negotiated protocol allows it, and
+	 * uncompressed until the next negotiation if the server answers that it
+	 * does not accept compressed requests.
 	 */
+	private <T> ApiResponse<T> doPost(String route, Class<T> type, PayloadBuffer payload) {
+		PluginContext context = PluginContext.getInstance();
+		int level = Math.min(context.getConfiguration().getCompressionLevel(), Deflater.BEST_COMPRESSION);
+		if (context.supportsCompressedUploads() && level > 0) {
+			try {
+				ApiResponse<T> response = doPost(route, type, compress(payload, level), GZIP_ENCODING);
+				if (!response.unsupportedMediaType()) {
+					return response;
+				}
+				context.rejectCompressedUploads();
+				LogManager.INSTANCE.logInfo("Server does not accept compressed data, sending it uncompressed.");
+			} catch (IOException e) {
+				LogManager.INSTANCE.logWarn(e, "Could not compress data, sending it uncompressed.");
+			}
+		}
+		return doPost(route, type, payload.toByteArray(), null);
+	}
+
+	private <T> ApiResponse<T> doPost(String route, Class<T> type, byte[] payload, String encoding) {
+		HttpResponse<String> response = null;
+		try {
+			HttpRequestWithBody request = Unirest.post("https://codealike.com/api/v2/{route}")
+					.header("accept", "application/json").header("Content-Type", "application/json")
+					.header(X_EAUTH_IDENTITY_HEADER, this.identity).header(X_EAUTH_TOKEN_HEADER, this.token)
+					.header(X_EAUTH_CLIENT_HEADER, "eclipse");
+			if (encoding != null) {
+				request = request.header(CONTENT_ENCODING_HEADER, encoding);
+			}
+			response = request.routeParam("route", route).body(payload).asString();
+
+			return new ApiResponse<T>(response.getStatus(), response.getStatusText());
+		} catch (Exception e) {
+			return new ApiResponse<T>(ApiResponse.Status.ConnectionProblems);
+		}
+	}
+
+	private static byte[] compress(PayloadBuffer payload, final int level) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(payload.size() / 4 + 64);
+		GZIPOutputStream stream = new GZIPOutputStream(compressed, 8192) {
+			{
+				def.setLevel(level);
+			}
+		};
+		try {
+			payload.writeTo(stream);
+		} finally {
+			stream.close();
+		}
+		return compressed.toByteArray();
+	}
+
 	private <T> ApiResponse<T> doPost(String route, Class<T> type, String payload) {
 		HttpResponse<String> response = null;
 		try {
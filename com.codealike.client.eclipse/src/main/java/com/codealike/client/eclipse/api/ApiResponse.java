@@ -102,9 +102,19 @@ public class ApiResponse <T> {
      *
      * @return true if response had internal server error, false otherwise
      */
-    public boolean error() {
-        return this.status == Status.InternalServerError || this.status == Status.ClientError;
-    }
+	public boolean error() {
+		return this.status == Status.InternalServerError || this.status == Status.ClientError
+				|| this.status == Status.UnsupportedMediaType;
+	}
+
+	/**
+	 * Check if the server rejected the request content encoding.
+	 *
+	 * @return true if response had unsupported media type status, false otherwise
+	 */
+	public boolean unsupportedMediaType() {
+		return this.status == Status.UnsupportedMediaType;
+	}
 
 	public T getObject() {
 		return object;
@@ -127,6 +137,7 @@ public class ApiResponse <T> {
 		Conflict,
 		NotFound,
 		Unauthorized, 
+		UnsupportedMediaType,
 		ClientError;
 		
 		static Status fromStatusCode(int code) {
@@ -141,6 +152,8 @@ public class ApiResponse <T> {
 				return Unauthorized;
 			case 409:
 				return Conflict;
+			case 415:
+				return UnsupportedMediaType;
 			case 503:
 				return ServiceUnavailable;
 			default:
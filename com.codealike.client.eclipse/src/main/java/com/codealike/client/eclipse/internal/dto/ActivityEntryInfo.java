@@ -5,11 +5,16 @@ package com.codealike.client.eclipse.internal.dto;
 
 import java.util.UUID;
 
-import org.joda.time.DateTime;
-import org.joda.time.Period;
+import com.codealike.client.eclipse.internal.serialization.DurationMillisDeserializer;
+import com.codealike.client.eclipse.internal.serialization.DurationMillisSerializer;
+import com.codealike.client.eclipse.internal.serialization.EpochMillisDeserializer;
+import com.codealike.client.eclipse.internal.serialization.EpochMillisSerializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 /**
- * Activity entry information DTO class.
+ * Activity entry information DTO class. Times are kept as epoch millis and
+ * durations as millis, they are only formatted when read or written as JSON.
  *
  * @author Daniel, pvmagacho
  * @version 1.5.0.2
@@ -17,10 +22,16 @@ import org.joda.time.Period;
 public class ActivityEntryInfo {
 
 	private UUID parentId;
-	private DateTime start;
-	private DateTime end;
+	@JsonSerialize(using = EpochMillisSerializer.class)
+	@JsonDeserialize(using = EpochMillisDeserializer.class)
+	private long start;
+	@JsonSerialize(using = EpochMillisSerializer.class)
+	@JsonDeserialize(using = EpochMillisDeserializer.class)
+	private long end;
 	private ActivityType type;
-	private Period duration;
+	@JsonSerialize(using = DurationMillisSerializer.class)
+	@JsonDeserialize(using = DurationMillisDeserializer.class)
+	private long duration;
 	private CodeContextInfo context;
 
 	/**
@@ -38,11 +49,11 @@ public class ActivityEntryInfo {
 		this.parentId = parentId;
 	}
 
-	public void setStart(DateTime start) {
+	public void setStart(long start) {
 		this.start = start;
 	}
 
-	public void setEnd(DateTime end) {
+	public void setEnd(long end) {
 		this.end = end;
 	}
 
@@ -50,7 +61,7 @@ public class ActivityEntryInfo {
 		this.type = type;
 	}
 
-	public void setDuration(Period duration) {
+	public void setDuration(long duration) {
 		this.duration = duration;
 	}
 
@@ -74,15 +85,15 @@ public class ActivityEntryInfo {
 		return type;
 	}
 
-	public DateTime getStart() {
+	public long getStart() {
 		return start;
 	}
 
-	public DateTime getEnd() {
+	public long getEnd() {
 		return end;
 	}
 
-	public Period getDuration() {
+	public long getDuration() {
 		return duration;
 	}
 
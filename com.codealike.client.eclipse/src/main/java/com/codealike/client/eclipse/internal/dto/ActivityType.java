@@ -29,6 +29,33 @@ public enum ActivityType {
 
 	BuildProject(1008), BuildProjectFailed(1009), BuildProjectSucceeded(1010), BuildProjectCancelled(1011);
 
+	// state ids start at -1, event ids at 1000
+	private static final int STATE_OFFSET = 1;
+	private static final int EVENT_OFFSET = 1000;
+	private static final ActivityType[] STATES;
+	private static final ActivityType[] EVENTS;
+
+	static {
+		int states = 0;
+		int events = 0;
+		for (ActivityType value : values()) {
+			if (value.id < EVENT_OFFSET) {
+				states = Math.max(states, value.id + STATE_OFFSET + 1);
+			} else {
+				events = Math.max(events, value.id - EVENT_OFFSET + 1);
+			}
+		}
+		STATES = new ActivityType[states];
+		EVENTS = new ActivityType[events];
+		for (ActivityType value : values()) {
+			if (value.id < EVENT_OFFSET) {
+				STATES[value.id + STATE_OFFSET] = value;
+			} else {
+				EVENTS[value.id - EVENT_OFFSET] = value;
+			}
+		}
+	}
+
 	private final int id;
 
 	ActivityType(int id) {
@@ -42,10 +69,10 @@ public enum ActivityType {
 	 * @return the created Activity type instance
 	 */
 	public static ActivityType fromId(int id) {
-		for (ActivityType value : ActivityType.values()) {
-			if (value.getId() == id) {
-				return value;
-			}
+		ActivityType[] table = id < EVENT_OFFSET ? STATES : EVENTS;
+		int index = id < EVENT_OFFSET ? id + STATE_OFFSET : id - EVENT_OFFSET;
+		if (index >= 0 && index < table.length && table[index] != null) {
+			return table[index];
 		}
 		throw new EnumConstantNotPresentException(ActivityType.class, "" + id);
 	}
@@ -53,4 +80,22 @@ public enum ActivityType {
 	public int getId() {
 		return id;
 	}
+
+	/**
+	 * Check if a state of this type can grow over a short neighbouring state.
+	 *
+	 * @return true if it can expand, false otherwise
+	 */
+	public boolean canExpand() {
+		return this != System && this != Building && this != Idle && this != Debugging;
+	}
+
+	/**
+	 * Check if a short state of this type can be absorbed by its neighbour.
+	 *
+	 * @return true if it can shrink, false otherwise
+	 */
+	public boolean canShrink() {
+		return this == Debugging || this == Coding || this == Idle;
+	}
 }
\ No newline at end of file
@@ -20,6 +20,18 @@ public class PluginSettingsInfo {
 	private int flushInterval;
 	@JsonProperty("overrideTrackingSettings")
 	private Boolean overrideTrackingSettings;
+	@JsonProperty("stateMergeGap")
+	private Integer stateMergeGap;
+	@JsonProperty("minStateDuration")
+	private Integer minStateDuration;
+	@JsonProperty("buildTimeout")
+	private Integer buildTimeout;
+	@JsonProperty("reorderWatermark")
+	private Integer reorderWatermark;
+	@JsonProperty("protocolVersion")
+	private Version protocolVersion;
+	@JsonProperty("compressionLevel")
+	private Integer compressionLevel;
 
 	/**
 	 * Default constructor
@@ -29,6 +41,11 @@ public class PluginSettingsInfo {
 		this.idleMaxPeriod = 0;
 		this.flushInterval = 0;
 		this.overrideTrackingSettings = true;
+		this.stateMergeGap = null;
+		this.minStateDuration = null;
+		this.buildTimeout = null;
+		this.reorderWatermark = null;
+		this.compressionLevel = null;
 	}
 
 	public int getIdleCheckInterval() {
@@ -66,4 +83,58 @@ public class PluginSettingsInfo {
 	public void setOverrideTrackingSettings(Boolean overrideTrackingSettings) {
 		this.overrideTrackingSettings = overrideTrackingSettings;
 	}
+
+	public Integer getStateMergeGap() {
+		return stateMergeGap;
+	}
+
+	@JsonProperty("stateMergeGap")
+	public void setStateMergeGap(Integer stateMergeGap) {
+		this.stateMergeGap = stateMergeGap;
+	}
+
+	public Integer getMinStateDuration() {
+		return minStateDuration;
+	}
+
+	@JsonProperty("minStateDuration")
+	public void setMinStateDuration(Integer minStateDuration) {
+		this.minStateDuration = minStateDuration;
+	}
+
+	public Integer getBuildTimeout() {
+		return buildTimeout;
+	}
+
+	@JsonProperty("buildTimeout")
+	public void setBuildTimeout(Integer buildTimeout) {
+		this.buildTimeout = buildTimeout;
+	}
+
+	public Integer getReorderWatermark() {
+		return reorderWatermark;
+	}
+
+	@JsonProperty("reorderWatermark")
+	public void setReorderWatermark(Integer reorderWatermark) {
+		this.reorderWatermark = reorderWatermark;
+	}
+
+	public Integer getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	@JsonProperty("compressionLevel")
+	public void setCompressionLevel(Integer compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+
+	public Version getProtocolVersion() {
+		return protocolVersion;
+	}
+
+	@JsonProperty("protocolVersion")
+	public void setProtocolVersion(Version protocolVersion) {
+		this.protocolVersion = protocolVersion;
+	}
 }
@@ -7,6 +7,7 @@ import java.util.UUID;
 
 import org.joda.time.DateTime;
 
+import com.codealike.client.eclipse.internal.utils.ActivityClock;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
@@ -40,7 +41,7 @@ public class SolutionContextInfo {
 	public SolutionContextInfo(UUID solutionID, String name) {
 		this.solutionId = solutionID;
 		this.name = name;
-		this.creationTime = DateTime.now();
+		this.creationTime = new DateTime(ActivityClock.now());
 	}
 
 	public UUID getSolutionId() {
@@ -39,6 +39,17 @@ public class Version {
 		this.minor = minor;
 	}
 
+	/**
+	 * Check if this version is the same as or newer than another one. Only
+	 * major and minor versions are compared.
+	 * 
+	 * @param other the version to compare with
+	 * @return true if this version is at least the other version
+	 */
+	public boolean isAtLeast(Version other) {
+		return major > other.major || (major == other.major && minor >= other.minor);
+	}
+
 	public int getMajor() {
 		return major;
 	}
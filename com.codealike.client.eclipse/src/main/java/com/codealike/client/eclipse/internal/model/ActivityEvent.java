@@ -2,26 +2,25 @@ package com.codealike.client.eclipse.internal.model;
 
 import java.util.UUID;
 
-import org.joda.time.DateTime;
-import org.joda.time.Period;
-
 import com.codealike.client.eclipse.internal.dto.ActivityType;
+import com.codealike.client.eclipse.internal.utils.ActivityClock;
 
 public class ActivityEvent {
 	
 	protected ActivityType type;
-	protected CodeContext context;
-	protected DateTime creationTime;
-	protected Period duration;
+	protected int contextId;
+	// creation time in epoch millis
+	protected long creationTime;
+	// duration in millis
+	protected long duration;
 	protected UUID projectId;
 	
 	
 	public ActivityEvent(UUID projectId, ActivityType type, CodeContext context)
 	{
-		creationTime = DateTime.now();
-		duration = Period.ZERO;
+		creationTime = ActivityClock.now();
 		this.type = type;
-		this.context = context;
+		this.contextId = context.getId();
 		this.projectId = projectId;
 	}
 
@@ -30,14 +29,18 @@ public class ActivityEvent {
 	}
 
 	public CodeContext getContext() {
-		return context;
+		return CodeContextDictionary.getInstance().get(contextId);
+	}
+
+	public int getContextId() {
+		return contextId;
 	}
 
-	public DateTime getCreationTime() {
+	public long getCreationTime() {
 		return creationTime;
 	}
 
-	public Period getDuration() {
+	public long getDuration() {
 		return duration;
 	}
 
@@ -45,7 +48,7 @@ public class ActivityEvent {
 		return projectId;
 	}
 
-	public void setCreationTime(DateTime creationTime) {
+	public void setCreationTime(long creationTime) {
 		this.creationTime = creationTime;
 	}
 
@@ -53,7 +56,7 @@ public class ActivityEvent {
 		return this.type == ActivityType.Event;
 	}
 
-	public void setDuration(Period duration) {
+	public void setDuration(long duration) {
 		this.duration = duration;
 	}
 
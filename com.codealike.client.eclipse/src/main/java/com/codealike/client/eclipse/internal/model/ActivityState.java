@@ -1,52 +1,41 @@
 package com.codealike.client.eclipse.internal.model;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.UUID;
 
-import org.joda.time.DateTime;
-import org.joda.time.Period;
-
 import com.codealike.client.eclipse.internal.dto.ActivityType;
-import com.codealike.client.eclipse.internal.startup.PluginContext;
+import com.codealike.client.eclipse.internal.utils.ActivityClock;
 
 public class ActivityState {
 	
 	public static final ActivityState NONE = new ActivityState();
 	
-	protected Period duration;
+	// duration in millis
+	protected long duration;
 	protected ActivityType type;
-	protected DateTime creationTime;
+	// creation time in epoch millis
+	protected long creationTime;
 	protected UUID projectId;
 	
 	public static ActivityState createDebugState(UUID projectId) {
-		return new ActivityState(projectId, ActivityType.Debugging, DateTime.now());
+		return new ActivityState(projectId, ActivityType.Debugging, ActivityClock.now());
 	}
 	
 	public static ActivityState createDesignState(UUID projectId) {
-		return new ActivityState(projectId, ActivityType.Coding, DateTime.now());
+		return new ActivityState(projectId, ActivityType.Coding, ActivityClock.now());
 	}
 	
 	public static ActivityState createBuildState(UUID projectId) {
-		return new ActivityState(projectId, ActivityType.Building, DateTime.now());
+		return new ActivityState(projectId, ActivityType.Building, ActivityClock.now());
 	}
 
 	public static ActivityState createSystemState(UUID projectId) {
-		return new ActivityState(projectId, ActivityType.System, DateTime.now());
+		return new ActivityState(projectId, ActivityType.System, ActivityClock.now());
 	}
 	
 	public static IdleActivityState createIdleState(UUID projectId) {
 		return IdleActivityState.createNew(projectId);
 	}
 	
-	public static List< ActivityState> createNullState() {
-		List<ActivityState> nullStates = new ArrayList<ActivityState>();
-		for (UUID projectId : PluginContext.getInstance().getTrackingService().getTrackedProjects().inverse().keySet()) {
-			nullStates.add(NullActivityState.createNew(projectId));
-		}
-		return nullStates;
-	}
-	
 	public static ActivityState createNullState(UUID projectId) {
 		return NullActivityState.createNew(projectId);
 	}
@@ -54,21 +43,19 @@ public class ActivityState {
 	protected ActivityState()
 	{
 		this.type = ActivityType.None;
-		this.duration = Period.ZERO;
 	}
 	
-	protected ActivityState(UUID projectId, ActivityType type, DateTime creationTime) {
+	protected ActivityState(UUID projectId, ActivityType type, long creationTime) {
 		this.projectId = projectId;
 		this.creationTime = creationTime;
 		this.type = type;
-		this.duration = Period.ZERO;
 	}
 
-	public Period getDuration() {
+	public long getDuration() {
 		return duration;
 	}
 
-	public void setDuration(Period duration) {
+	public void setDuration(long duration) {
 		this.duration = duration;
 	}
 	
@@ -77,30 +64,28 @@ public class ActivityState {
 		return type;
 	}
 
-	public DateTime getCreationTime() {
+	public long getCreationTime() {
 		return creationTime;
 	}
 
 	public ActivityState recreate() {
-		return new ActivityState(this.projectId, this.type, DateTime.now());
+		return new ActivityState(this.projectId, this.type, ActivityClock.now());
 	}
 
 	public UUID getProjectId() {
 		return this.projectId;
 	}
 
-	public void setCreationTime(DateTime startWorkspaceDate) {
+	public void setCreationTime(long startWorkspaceDate) {
 		this.creationTime = startWorkspaceDate;
 	}
 
 	public boolean canExpand() {
-		return this.type != ActivityType.System && this.type != ActivityType.Building && 
-				this.type != ActivityType.Idle && this.type != ActivityType.Debugging;
+		return this.type.canExpand();
 	}
 	
 	public boolean canShrink() {
-		return this.type == ActivityType.Debugging || this.type == ActivityType.Coding || 
-				this.type == ActivityType.Idle;
+		return this.type.canShrink();
 	}
 
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.codealike.client.eclipse.internal.dto.ActivityType;
+
+/**
+ * Columnar store for recorded states or events. Each entry is a row spread
+ * over growable primitive arrays, so recording does not keep a
+ * {@link org.joda.time.DateTime}, a {@link org.joda.time.Period} and a list
+ * node per entry. Projects are kept once in a side table and rows reference
+ * them by index, code contexts are referenced by their
+ * {@link CodeContextDictionary} id.
+ */
+public class ActivityStore {
+	// no context attached to the row (states)
+	public static final int NO_CONTEXT = -1;
+
+	private static final int INITIAL_CAPACITY = 256;
+	private static final ActivityType[] TYPES = ActivityType.values();
+
+	// start and end timestamps in epoch millis
+	private long[] starts;
+	private long[] ends;
+	// activity type ordinals
+	private short[] types;
+	// indices into the project table
+	private int[] projects;
+	// ids of interned code contexts
+	private int[] contexts;
+	private int size;
+
+	private final List<UUID> projectTable = new ArrayList<UUID>();
+	private final Map<UUID, Integer> projectIndices = new HashMap<UUID, Integer>();
+
+	public ActivityStore() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public ActivityStore(int capacity) {
+		capacity = Math.max(capacity, 1);
+		this.starts = new long[capacity];
+		this.ends = new long[capacity];
+		this.types = new short[capacity];
+		this.projects = new int[capacity];
+		this.contexts = new int[capacity];
+	}
+
+	/**
+	 * Append a row with zero duration.
+	 *
+	 * @param start     the start time in epoch millis
+	 * @param type      the activity type
+	 * @param projectId the project UUID
+	 * @param contextId the code context id or {@link #NO_CONTEXT}
+	 * @return the index of the new row
+	 */
+	public int add(long start, ActivityType type, UUID projectId, int contextId) {
+		if (size == starts.length) {
+			grow();
+		}
+		int row = size++;
+		starts[row] = start;
+		ends[row] = start;
+		types[row] = (short) type.ordinal();
+		projects[row] = projectIndex(projectId);
+		contexts[row] = contextId;
+		return row;
+	}
+
+	private void grow() {
+		int capacity = starts.length + (starts.length >> 1) + 1;
+		starts = Arrays.copyOf(starts, capacity);
+		ends = Arrays.copyOf(ends, capacity);
+		types = Arrays.copyOf(types, capacity);
+		projects = Arrays.copyOf(projects, capacity);
+		contexts = Arrays.copyOf(contexts, capacity);
+	}
+
+	private int projectIndex(UUID projectId) {
+		Integer index = projectIndices.get(projectId);
+		if (index == null) {
+			index = projectTable.size();
+			projectTable.add(projectId);
+			projectIndices.put(projectId, index);
+		}
+		return index;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public long getStart(int row) {
+		return starts[row];
+	}
+
+	public void setStart(int row, long start) {
+		starts[row] = start;
+	}
+
+	public long getEnd(int row) {
+		return ends[row];
+	}
+
+	public void setEnd(int row, long end) {
+		ends[row] = end;
+	}
+
+	public long getDuration(int row) {
+		return ends[row] - starts[row];
+	}
+
+	public ActivityType getType(int row) {
+		return TYPES[types[row]];
+	}
+
+	public int getProjectIndex(int row) {
+		return projects[row];
+	}
+
+	public UUID getProjectId(int row) {
+		return projectTable.get(projects[row]);
+	}
+
+	public int getProjectCount() {
+		return projectTable.size();
+	}
+
+	public UUID getProjectIdAt(int projectIndex) {
+		return projectTable.get(projectIndex);
+	}
+
+	public int getContextId(int row) {
+		return contexts[row];
+	}
+
+	public CodeContext getContext(int row) {
+		int id = contexts[row];
+		return id != NO_CONTEXT ? CodeContextDictionary.getInstance().get(id) : null;
+	}
+}
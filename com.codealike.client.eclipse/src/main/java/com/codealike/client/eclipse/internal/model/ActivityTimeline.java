@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.model;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * The states and events recorded for a single project, along with the rows
+ * that were processed so far and are ready to be sent.
+ */
+public class ActivityTimeline {
+	private final UUID projectId;
+	private final ActivityStore states;
+	private final ActivityStore events;
+
+	// rows of processed states and events, in recording order
+	private int[] processedStates = new int[16];
+	private int processedStateCount;
+	private int[] processedEvents = new int[16];
+	private int processedEventCount;
+	// row of the last state, not yet compacted, or -1
+	private int pendingStateRow = -1;
+	// recording sequence of the pending state and of the last processed state
+	private long pendingStateSequence;
+	private long lastStateSequence = -1;
+
+	public ActivityTimeline(UUID projectId) {
+		this.projectId = projectId;
+		this.states = new ActivityStore();
+		this.events = new ActivityStore();
+	}
+
+	public UUID getProjectId() {
+		return projectId;
+	}
+
+	public ActivityStore getStates() {
+		return states;
+	}
+
+	public ActivityStore getEvents() {
+		return events;
+	}
+
+	public boolean isEmpty() {
+		return states.isEmpty() && events.isEmpty();
+	}
+
+	public void addProcessedState(int row) {
+		if (processedStateCount == processedStates.length) {
+			processedStates = Arrays.copyOf(processedStates, processedStateCount * 2);
+		}
+		processedStates[processedStateCount++] = row;
+	}
+
+	public int getProcessedStateCount() {
+		return processedStateCount;
+	}
+
+	public int getProcessedState(int index) {
+		return processedStates[index];
+	}
+
+	public int getLastProcessedState() {
+		return processedStateCount > 0 ? processedStates[processedStateCount - 1] : -1;
+	}
+
+	public void addProcessedEvent(int row) {
+		if (processedEventCount == processedEvents.length) {
+			processedEvents = Arrays.copyOf(processedEvents, processedEventCount * 2);
+		}
+		processedEvents[processedEventCount++] = row;
+	}
+
+	public int getProcessedEventCount() {
+		return processedEventCount;
+	}
+
+	public int getProcessedEvent(int index) {
+		return processedEvents[index];
+	}
+
+	public int getPendingStateRow() {
+		return pendingStateRow;
+	}
+
+	public void setPendingStateRow(int pendingStateRow) {
+		this.pendingStateRow = pendingStateRow;
+	}
+
+	public long getPendingStateSequence() {
+		return pendingStateSequence;
+	}
+
+	public void setPendingStateSequence(long pendingStateSequence) {
+		this.pendingStateSequence = pendingStateSequence;
+	}
+
+	public long getLastStateSequence() {
+		return lastStateSequence;
+	}
+
+	public void setLastStateSequence(long lastStateSequence) {
+		this.lastStateSequence = lastStateSequence;
+	}
+}
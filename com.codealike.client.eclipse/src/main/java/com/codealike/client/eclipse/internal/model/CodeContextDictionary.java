@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.model;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Session wide dictionary of code contexts. Every distinct (project, file,
+ * package, class, member) tuple is interned once and gets a small integer id,
+ * so recorded events only keep the id and two contexts are equal when their
+ * ids are.
+ */
+public class CodeContextDictionary {
+	private static final CodeContextDictionary _instance = new CodeContextDictionary();
+	// initial size of the hash table, must be a power of two
+	private static final int INITIAL_CAPACITY = 1024;
+
+	// interned contexts indexed by id
+	private volatile StructuralCodeContext[] contexts;
+	private int size;
+	// open addressing hash table holding id + 1 per slot, 0 when empty
+	private int[] table;
+
+	public static CodeContextDictionary getInstance() {
+		return _instance;
+	}
+
+	private CodeContextDictionary() {
+		this.contexts = new StructuralCodeContext[INITIAL_CAPACITY / 2];
+		this.table = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Get the interned context for the given values, creating it the first time
+	 * the tuple is seen. Null values are kept as null, so they are left out of
+	 * the payloads like before.
+	 *
+	 * @return the interned context
+	 */
+	public synchronized StructuralCodeContext intern(UUID projectId, String project, String file,
+			String packageName, String className, String memberName) {
+		int hash = StructuralCodeContext.hash(projectId, project, file, packageName, className, memberName);
+		int mask = table.length - 1;
+		int slot = spread(hash) & mask;
+		while (table[slot] != 0) {
+			StructuralCodeContext candidate = contexts[table[slot] - 1];
+			if (candidate.hashCode() == hash
+					&& candidate.matches(projectId, project, file, packageName, className, memberName)) {
+				return candidate;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		StructuralCodeContext context = new StructuralCodeContext(size, hash, projectId, project, file,
+				packageName, className, memberName);
+		StructuralCodeContext[] current = contexts;
+		if (size == current.length) {
+			current = Arrays.copyOf(current, size * 2);
+		}
+		current[size] = context;
+		contexts = current;
+		table[slot] = ++size;
+
+		if (size * 2 > table.length) {
+			rehash();
+		}
+		return context;
+	}
+
+	/**
+	 * Get an interned context by id.
+	 *
+	 * @param id the context id
+	 * @return the context
+	 */
+	public StructuralCodeContext get(int id) {
+		return contexts[id];
+	}
+
+	private void rehash() {
+		int[] rehashed = new int[table.length * 2];
+		int mask = rehashed.length - 1;
+		for (int id = 0; id < size; id++) {
+			int slot = spread(contexts[id].hashCode()) & mask;
+			while (rehashed[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			rehashed[slot] = id + 1;
+		}
+		table = rehashed;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+}
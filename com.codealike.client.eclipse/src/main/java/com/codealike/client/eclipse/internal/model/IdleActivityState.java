@@ -2,38 +2,38 @@ package com.codealike.client.eclipse.internal.model;
 
 import java.util.UUID;
 
-import org.joda.time.DateTime;
-
 import com.codealike.client.eclipse.internal.dto.ActivityType;
+import com.codealike.client.eclipse.internal.utils.ActivityClock;
 
 public class IdleActivityState extends ActivityState {
 	
-	private DateTime lastActivity;
+	// last user activity in epoch millis
+	private long lastActivity;
 	
 	
 	protected static IdleActivityState createNew(UUID projectId) {
-		IdleActivityState state = new IdleActivityState(projectId, ActivityType.Idle, DateTime.now());
+		IdleActivityState state = new IdleActivityState(projectId, ActivityType.Idle, ActivityClock.now());
 		state.lastActivity = state.getCreationTime();
 		
 		return state;
 	}
 
-	public IdleActivityState(UUID projectId, ActivityType type, DateTime creationTime)
+	public IdleActivityState(UUID projectId, ActivityType type, long creationTime)
 	{
 		super(projectId, type, creationTime);
 	}
 
-	public DateTime getLastActivity() {
+	public long getLastActivity() {
 		return lastActivity;
 	}
 
-	public void setLastActivity(DateTime lastActivity) {
+	public void setLastActivity(long lastActivity) {
 		this.lastActivity = lastActivity;
 	}
 	
 	@Override
 	public IdleActivityState recreate() {
-		return new IdleActivityState(this.projectId, this.type, DateTime.now());
+		return new IdleActivityState(this.projectId, this.type, ActivityClock.now());
 	}
 	
 }
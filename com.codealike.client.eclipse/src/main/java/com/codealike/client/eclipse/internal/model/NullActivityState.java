@@ -2,33 +2,32 @@ package com.codealike.client.eclipse.internal.model;
 
 import java.util.UUID;
 
-import org.joda.time.DateTime;
-
 import com.codealike.client.eclipse.internal.dto.ActivityType;
 import com.codealike.client.eclipse.internal.startup.PluginContext;
+import com.codealike.client.eclipse.internal.utils.ActivityClock;
 
 public class NullActivityState extends ActivityState {
 
 	protected static NullActivityState createNew() {
-		NullActivityState state = new NullActivityState(ActivityType.Idle, DateTime.now(), PluginContext.UNASSIGNED_PROJECT);
+		NullActivityState state = new NullActivityState(ActivityType.Idle, ActivityClock.now(), PluginContext.UNASSIGNED_PROJECT);
 		
 		return state;
 	}
 	
 	protected static NullActivityState createNew(UUID projectId) {
-		NullActivityState state = new NullActivityState(ActivityType.Idle, DateTime.now(), projectId);
+		NullActivityState state = new NullActivityState(ActivityType.Idle, ActivityClock.now(), projectId);
 		
 		return state;
 	}
 	
-	public NullActivityState(ActivityType type, DateTime creationTime, UUID projectId)
+	public NullActivityState(ActivityType type, long creationTime, UUID projectId)
 	{
 		super(projectId, type, creationTime);
 	}
 	
 	@Override
 	public NullActivityState recreate() {
-		return new NullActivityState(this.type, DateTime.now(), this.projectId);
+		return new NullActivityState(this.type, ActivityClock.now(), this.projectId);
 	}
 	
 }
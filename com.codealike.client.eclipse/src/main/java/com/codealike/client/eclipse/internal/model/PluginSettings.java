@@ -4,12 +4,27 @@ public class PluginSettings {
     private int idleCheckInterval;
     private int idleMaxPeriod;
     private int flushInterval;
+    // largest gap in millis between two states of the same type that are merged
+    private int stateMergeGap;
+    // shrinkable states shorter than this in millis are absorbed by the previous state
+    private int minStateDuration;
+    // build starts without a finish after this many millis are dropped
+    private int buildTimeout;
+    // how long recorded entries are held to put them in timestamp order
+    private int reorderWatermark;
+    // gzip level of uploads from 1 to 9, 0 or less to send them uncompressed
+    private int compressionLevel;
 
     public PluginSettings() {
         // set the default values
         this.idleCheckInterval = 30000;
         this.idleMaxPeriod = 60000;
         this.flushInterval = 300000;
+        this.stateMergeGap = 0;
+        this.minStateDuration = 2000;
+        this.buildTimeout = 3600000;
+        this.reorderWatermark = 250;
+        this.compressionLevel = 6;
     }
 
     public int getIdleCheckInterval() {
@@ -35,4 +50,44 @@ public class PluginSettings {
     public void setFlushInterval(int flushInterval) {
         this.flushInterval = flushInterval;
     }
+
+    public int getStateMergeGap() {
+        return stateMergeGap;
+    }
+
+    public void setStateMergeGap(int stateMergeGap) {
+        this.stateMergeGap = stateMergeGap;
+    }
+
+    public int getMinStateDuration() {
+        return minStateDuration;
+    }
+
+    public void setMinStateDuration(int minStateDuration) {
+        this.minStateDuration = minStateDuration;
+    }
+
+    public int getBuildTimeout() {
+        return buildTimeout;
+    }
+
+    public void setBuildTimeout(int buildTimeout) {
+        this.buildTimeout = buildTimeout;
+    }
+
+    public int getReorderWatermark() {
+        return reorderWatermark;
+    }
+
+    public void setReorderWatermark(int reorderWatermark) {
+        this.reorderWatermark = reorderWatermark;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
 }
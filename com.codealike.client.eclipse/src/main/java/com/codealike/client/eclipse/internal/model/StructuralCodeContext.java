@@ -1,28 +1,32 @@
 package com.codealike.client.eclipse.internal.model;
 
+import java.util.Objects;
 import java.util.UUID;
 
 import com.codealike.client.eclipse.internal.startup.PluginContext;
 
 public class StructuralCodeContext implements CodeContext {
 
-	private UUID projectId;
-	private String project;
-	private String file;
-	private String packageName;
-	private String className;
-	private String memberName;
+	private final int id;
+	private final int hash;
+	private final UUID projectId;
+	private final String project;
+	private final String file;
+	private final String packageName;
+	private final String className;
+	private final String memberName;
 	
 	public static StructuralCodeContext createNullContext() {
-		return new StructuralCodeContext(PluginContext.UNASSIGNED_PROJECT, "", "", "", "", "");
+		return CodeContextDictionary.getInstance().intern(PluginContext.UNASSIGNED_PROJECT, "", "", "", "", "");
 	}
 	
-	public StructuralCodeContext(UUID projectId)
-	{
-		this(projectId, "", "", "", "", "");
-	}
-	
-	protected StructuralCodeContext(UUID projectId, String project, String file, String packageName, String className, String memberName) {
+	/**
+	 * Contexts are only created by {@link CodeContextDictionary}, which interns
+	 * them and precomputes their hash.
+	 */
+	StructuralCodeContext(int id, int hash, UUID projectId, String project, String file, String packageName, String className, String memberName) {
+		this.id = id;
+		this.hash = hash;
 		this.projectId = projectId;
 		this.project = project;
 		this.file = file;
@@ -31,9 +35,15 @@ public class StructuralCodeContext implements CodeContext {
 		this.memberName = memberName;
 	}
 	
-	@SuppressWarnings("unused")
-	private StructuralCodeContext() { }
-	
+	/* (non-Javadoc)
+	 * @see com.codealike.client.eclipse.internal.model.CodeContext#getId()
+	 */
+	@Override
+	public int getId()
+	{
+		return id;
+	}
+
 	/* (non-Javadoc)
 	 * @see com.codealike.client.eclipse.internal.model.CodeContext#getProjectId()
 	 */
@@ -51,14 +61,6 @@ public class StructuralCodeContext implements CodeContext {
 		return project;
 	}
 
-	/* (non-Javadoc)
-	 * @see com.codealike.client.eclipse.internal.model.CodeContext#setProject(java.lang.String)
-	 */
-	@Override
-	public void setProject(String project) {
-		this.project = project;
-	}
-
 	/* (non-Javadoc)
 	 * @see com.codealike.client.eclipse.internal.model.CodeContext#getFile()
 	 */
@@ -67,14 +69,6 @@ public class StructuralCodeContext implements CodeContext {
 		return file;
 	}
 
-	/* (non-Javadoc)
-	 * @see com.codealike.client.eclipse.internal.model.CodeContext#setFile(java.lang.String)
-	 */
-	@Override
-	public void setFile(String file) {
-		this.file = file;
-	}
-
 	/* (non-Javadoc)
 	 * @see com.codealike.client.eclipse.internal.model.CodeContext#getPackageName()
 	 */
@@ -83,14 +77,6 @@ public class StructuralCodeContext implements CodeContext {
 		return packageName;
 	}
 
-	/* (non-Javadoc)
-	 * @see com.codealike.client.eclipse.internal.model.CodeContext#setPackageName(java.lang.String)
-	 */
-	@Override
-	public void setPackageName(String packageName) {
-		this.packageName = packageName;
-	}
-
 	/* (non-Javadoc)
 	 * @see com.codealike.client.eclipse.internal.model.CodeContext#getClassName()
 	 */
@@ -99,14 +85,6 @@ public class StructuralCodeContext implements CodeContext {
 		return className;
 	}
 
-	/* (non-Javadoc)
-	 * @see com.codealike.client.eclipse.internal.model.CodeContext#setClassName(java.lang.String)
-	 */
-	@Override
-	public void setClassName(String className) {
-		this.className = className;
-	}
-
 	/* (non-Javadoc)
 	 * @see com.codealike.client.eclipse.internal.model.CodeContext#getMemberName()
 	 */
@@ -114,14 +92,6 @@ public class StructuralCodeContext implements CodeContext {
 	public String getMemberName() {
 		return memberName;
 	}
-
-	/* (non-Javadoc)
-	 * @see com.codealike.client.eclipse.internal.model.CodeContext#setMemberName(java.lang.String)
-	 */
-	@Override
-	public void setMemberName(String memberName) {
-		this.memberName = memberName;
-	};
 	
 	@Override
 	public String toString() {
@@ -148,8 +118,7 @@ public class StructuralCodeContext implements CodeContext {
 		return buffer.toString();
 	}
 
-	@Override
-	public int hashCode() {
+	static int hash(UUID projectId, String project, String file, String packageName, String className, String memberName) {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result
@@ -165,6 +134,17 @@ public class StructuralCodeContext implements CodeContext {
 		return result;
 	}
 
+	boolean matches(UUID projectId, String project, String file, String packageName, String className, String memberName) {
+		return Objects.equals(this.className, className) && Objects.equals(this.file, file)
+				&& Objects.equals(this.memberName, memberName) && Objects.equals(this.packageName, packageName)
+				&& Objects.equals(this.project, project) && Objects.equals(this.projectId, projectId);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
@@ -174,36 +154,7 @@ public class StructuralCodeContext implements CodeContext {
 		if (getClass() != obj.getClass())
 			return false;
 		StructuralCodeContext other = (StructuralCodeContext) obj;
-		if (className == null) {
-			if (other.className != null)
-				return false;
-		} else if (!className.equals(other.className))
-			return false;
-		if (file == null) {
-			if (other.file != null)
-				return false;
-		} else if (!file.equals(other.file))
-			return false;
-		if (memberName == null) {
-			if (other.memberName != null)
-				return false;
-		} else if (!memberName.equals(other.memberName))
-			return false;
-		if (packageName == null) {
-			if (other.packageName != null)
-				return false;
-		} else if (!packageName.equals(other.packageName))
-			return false;
-		if (project == null) {
-			if (other.project != null)
-				return false;
-		} else if (!project.equals(other.project))
-			return false;
-		if (projectId == null) {
-			if (other.projectId != null)
-				return false;
-		} else if (!projectId.equals(other.projectId))
-			return false;
-		return true;
+		// contexts are interned, so the same values always share the same id
+		return id == other.id;
 	}
 }
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.processing;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import com.codealike.client.eclipse.internal.dto.ActivityInfo;
+import com.codealike.client.eclipse.internal.dto.ActivityType;
+import com.codealike.client.eclipse.internal.model.ActivityStore;
+import com.codealike.client.eclipse.internal.model.ActivityTimeline;
+import com.codealike.client.eclipse.internal.model.CodeContext;
+import com.codealike.client.eclipse.internal.model.CodeContextDictionary;
+import com.codealike.client.eclipse.internal.serialization.TimeCodec;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Processed activity of a single project, ready to be sent. The batch
+ * references the processed rows of the project timeline and writes them
+ * straight to a {@link JsonGenerator} in the {@link ActivityInfo} layout, so
+ * no intermediate DTO graph is built.
+ */
+public class ActivityBatch {
+	private final String machine;
+	private final String client;
+	private final String extension;
+	private final String instance;
+	private final UUID solutionId;
+	private final String projectName;
+	private final UUID batchId;
+	// the project timeline, or null if nothing was recorded for it
+	private final ActivityTimeline timeline;
+	// ranges of processed states and events included in the batch
+	private final int stateFrom;
+	private final int stateTo;
+	private final int eventFrom;
+	private final int eventTo;
+
+	public ActivityBatch(String machine, String client, String extension, String instance, UUID solutionId,
+			String projectName, ActivityTimeline timeline) {
+		this(machine, client, extension, instance, solutionId, projectName, timeline, 0,
+				timeline != null ? timeline.getProcessedStateCount() : 0, 0,
+				timeline != null ? timeline.getProcessedEventCount() : 0);
+	}
+
+	private ActivityBatch(String machine, String client, String extension, String instance, UUID solutionId,
+			String projectName, ActivityTimeline timeline, int stateFrom, int stateTo, int eventFrom, int eventTo) {
+		this.machine = machine;
+		this.client = client;
+		this.extension = extension;
+		this.instance = instance;
+		this.solutionId = solutionId;
+		this.projectName = projectName;
+		this.batchId = UUID.randomUUID();
+		this.timeline = timeline;
+		this.stateFrom = stateFrom;
+		this.stateTo = stateTo;
+		this.eventFrom = eventFrom;
+		this.eventTo = eventTo;
+	}
+
+	/**
+	 * Create a batch with a part of the states and events of this one. The new
+	 * batch gets its own batch id.
+	 *
+	 * @param stateFrom the index of the first state to include
+	 * @param stateTo   the index after the last state to include
+	 * @param eventFrom the index of the first event to include
+	 * @param eventTo   the index after the last event to include
+	 * @return the new batch
+	 */
+	public ActivityBatch slice(int stateFrom, int stateTo, int eventFrom, int eventTo) {
+		return new ActivityBatch(machine, client, extension, instance, solutionId, projectName, timeline,
+				this.stateFrom + stateFrom, this.stateFrom + stateTo, this.eventFrom + eventFrom,
+				this.eventFrom + eventTo);
+	}
+
+	public String getMachine() {
+		return machine;
+	}
+
+	public String getClient() {
+		return client;
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+
+	public String getInstance() {
+		return instance;
+	}
+
+	public String getProjectName() {
+		return projectName;
+	}
+
+	public UUID getSolutionId() {
+		return solutionId;
+	}
+
+	public UUID getBatchId() {
+		return batchId;
+	}
+
+	public int getStateCount() {
+		return stateTo - stateFrom;
+	}
+
+	public int getEventCount() {
+		return eventTo - eventFrom;
+	}
+
+	public ActivityType getStateType(int index) {
+		return timeline.getStates().getType(timeline.getProcessedState(stateFrom + index));
+	}
+
+	public long getStateStart(int index) {
+		return timeline.getStates().getStart(timeline.getProcessedState(stateFrom + index));
+	}
+
+	public long getEventStart(int index) {
+		return timeline.getEvents().getStart(timeline.getProcessedEvent(eventFrom + index));
+	}
+
+	public CodeContext getEventContext(int index) {
+		return timeline.getEvents().getContext(timeline.getProcessedEvent(eventFrom + index));
+	}
+
+	ActivityTimeline getTimeline() {
+		return timeline;
+	}
+
+	int getStateRow(int index) {
+		return timeline.getProcessedState(stateFrom + index);
+	}
+
+	int getEventRow(int index) {
+		return timeline.getProcessedEvent(eventFrom + index);
+	}
+
+	// Check if activity is valid
+	public boolean isValid() {
+		return getStateCount() > 0;
+	}
+
+	/**
+	 * Write the batch as an {@link ActivityInfo} JSON object.
+	 *
+	 * @param generator the generator to write to
+	 * @throws IOException if writing fails
+	 */
+	public void writeTo(JsonGenerator generator) throws IOException {
+		writeTo(generator, false);
+	}
+
+	/**
+	 * Write the batch as an {@link ActivityInfo} JSON object. With a context
+	 * table, the distinct event contexts are written once in a
+	 * {@code contexts} array and each event references its context by index.
+	 *
+	 * @param generator    the generator to write to
+	 * @param contextTable true to write a context table
+	 * @throws IOException if writing fails
+	 */
+	public void writeTo(JsonGenerator generator, boolean contextTable) throws IOException {
+		char[] buffer = new char[TimeCodec.MAX_LENGTH];
+
+		writeHeader(generator, machine, client, extension, solutionId, projectName);
+
+		generator.writeArrayFieldStart("states");
+		for (int i = 0; i < getStateCount(); i++) {
+			ActivityStore store = timeline.getStates();
+			int row = timeline.getProcessedState(stateFrom + i);
+			generator.writeStartObject();
+			writeEntry(generator, buffer, store.getProjectId(row), store.getStart(row), store.getEnd(row),
+					store.getType(row).getId());
+			generator.writeEndObject();
+		}
+		generator.writeEndArray();
+
+		int[] contextIndices = null;
+		if (contextTable && getEventCount() > 0) {
+			ActivityStore store = timeline.getEvents();
+			ActivityContextTable table = new ActivityContextTable();
+			contextIndices = new int[getEventCount()];
+			for (int i = 0; i < contextIndices.length; i++) {
+				int row = timeline.getProcessedEvent(eventFrom + i);
+				contextIndices[i] = table.indexOf(store.getProjectIndex(row), store.getContextId(row));
+			}
+
+			generator.writeArrayFieldStart("contexts");
+			CodeContextDictionary dictionary = CodeContextDictionary.getInstance();
+			for (int i = 0; i < table.size(); i++) {
+				CodeContext context = dictionary.get(table.getContextId(i));
+				writeContext(generator, context.getMemberName(), context.getPackageName(),
+						store.getProjectIdAt(table.getProjectIndex(i)), context.getFile(), context.getClassName());
+			}
+			generator.writeEndArray();
+		}
+
+		generator.writeArrayFieldStart("events");
+		for (int i = 0; i < getEventCount(); i++) {
+			ActivityStore store = timeline.getEvents();
+			int row = timeline.getProcessedEvent(eventFrom + i);
+			generator.writeStartObject();
+			writeEntry(generator, buffer, store.getProjectId(row), store.getStart(row), store.getEnd(row),
+					store.getType(row).getId());
+
+			if (contextIndices != null) {
+				generator.writeNumberField("context", contextIndices[i]);
+			} else {
+				CodeContext context = store.getContext(row);
+				generator.writeFieldName("context");
+				writeContext(generator, context.getMemberName(), context.getPackageName(), store.getProjectId(row),
+						context.getFile(), context.getClassName());
+			}
+
+			generator.writeEndObject();
+		}
+		generator.writeEndArray();
+
+		writeFooter(generator, instance, solutionId, batchId);
+	}
+
+	/*
+	 * The pieces of the ActivityInfo layout are shared with the offline cache
+	 * reader, so a reloaded batch is sent exactly as it would have been.
+	 */
+	static void writeHeader(JsonGenerator generator, String machine, String client, String extension,
+			UUID solutionId, String projectName) throws IOException {
+		generator.writeStartObject();
+		writeField(generator, "machine", machine);
+		writeField(generator, "client", client);
+		writeField(generator, "extension", extension);
+
+		generator.writeArrayFieldStart("projects");
+		generator.writeStartObject();
+		generator.writeStringField("projectId", solutionId.toString());
+		writeField(generator, "name", projectName);
+		generator.writeEndObject();
+		generator.writeEndArray();
+	}
+
+	static void writeFooter(JsonGenerator generator, String instance, UUID solutionId, UUID batchId)
+			throws IOException {
+		writeField(generator, "instance", instance);
+		generator.writeStringField("solutionId", solutionId.toString());
+		generator.writeStringField("batchId", batchId.toString());
+		generator.writeEndObject();
+	}
+
+	static void writeEntry(JsonGenerator generator, char[] buffer, UUID parentId, long start, long end, int typeId)
+			throws IOException {
+		generator.writeStringField("parentId", parentId.toString());
+		generator.writeFieldName("start");
+		generator.writeString(buffer, 0, TimeCodec.writeDate(start, buffer, 0));
+		generator.writeFieldName("end");
+		generator.writeString(buffer, 0, TimeCodec.writeDate(end, buffer, 0));
+		generator.writeNumberField("type", typeId);
+		generator.writeFieldName("duration");
+		generator.writeString(buffer, 0, TimeCodec.writeDuration(end - start, buffer, 0));
+	}
+
+	static void writeContext(JsonGenerator generator, String member, String namespace, UUID projectId, String file,
+			String className) throws IOException {
+		generator.writeStartObject();
+		writeField(generator, "member", member);
+		writeField(generator, "namespace", namespace);
+		generator.writeStringField("projectId", projectId.toString());
+		writeField(generator, "file", file);
+		writeField(generator, "class", className);
+		generator.writeEndObject();
+	}
+
+	// null values are left out, as the mapper does for the DTOs
+	private static void writeField(JsonGenerator generator, String name, String value) throws IOException {
+		if (value != null) {
+			generator.writeStringField(name, value);
+		}
+	}
+}
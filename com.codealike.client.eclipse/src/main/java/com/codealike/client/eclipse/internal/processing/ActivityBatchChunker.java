@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.processing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.codealike.client.eclipse.internal.model.CodeContext;
+
+/**
+ * Splits batches into consecutive chunks of rows, so a flush after a long
+ * offline period is sent as several small requests. A chunk is closed when it
+ * reaches the maximum number of entries or the estimated JSON size, and each
+ * chunk is sent as a batch with its own batch id. Like the batch it comes
+ * from, every chunk has at least one state: events are kept in the chunk
+ * until a state follows them, and events after the last state go with the
+ * last chunk.
+ * <p>
+ * Chunks follow the recording order rather than strict time windows: a paired
+ * build event keeps its row although its start is moved back to the start of
+ * the build.
+ */
+public class ActivityBatchChunker {
+	public static final int DEFAULT_MAX_ENTRIES = 5000;
+	public static final int DEFAULT_MAX_BYTES = 512 * 1024;
+
+	// estimated JSON size of a state and of an event without its context values
+	private static final int STATE_SIZE = 170;
+	private static final int EVENT_SIZE = 260;
+
+	private final int maxEntries;
+	private final int maxBytes;
+
+	public ActivityBatchChunker() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * Batch chunker constructor
+	 *
+	 * @param maxEntries the maximum number of states and events per chunk
+	 * @param maxBytes   the maximum estimated JSON size of a chunk
+	 */
+	public ActivityBatchChunker(int maxEntries, int maxBytes) {
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Split a batch into chunks. States and events are walked together in
+	 * recording order, each event taken at the latest start of the events up to
+	 * it.
+	 *
+	 * @param batch the batch to split
+	 * @return the chunks, or the batch itself if it is small enough
+	 */
+	public List<ActivityBatch> split(ActivityBatch batch) {
+		int stateCount = batch.getStateCount();
+		int eventCount = batch.getEventCount();
+		if (stateCount + eventCount <= maxEntries
+				&& (long) stateCount * STATE_SIZE + (long) eventCount * EVENT_SIZE <= maxBytes / 2) {
+			// small enough even with long context values
+			return Collections.singletonList(batch);
+		}
+
+		List<ActivityBatch> chunks = new ArrayList<ActivityBatch>();
+		int stateFrom = 0;
+		int eventFrom = 0;
+		// start of the last closed window
+		int lastStateFrom = 0;
+		int lastEventFrom = 0;
+		int state = 0;
+		int event = 0;
+		int entries = 0;
+		long bytes = 0;
+		// events moved back in time are kept at their row
+		long eventTime = Long.MIN_VALUE;
+		while (state < stateCount || event < eventCount) {
+			if (event < eventCount) {
+				eventTime = Math.max(eventTime, batch.getEventStart(event));
+			}
+			boolean takeState = event == eventCount
+					|| (state < stateCount && batch.getStateStart(state) <= eventTime);
+			int size = takeState ? STATE_SIZE : estimateEvent(batch.getEventContext(event));
+			if (state > stateFrom && (entries >= maxEntries || bytes + size > maxBytes)) {
+				chunks.add(batch.slice(stateFrom, state, eventFrom, event));
+				lastStateFrom = stateFrom;
+				lastEventFrom = eventFrom;
+				stateFrom = state;
+				eventFrom = event;
+				entries = 0;
+				bytes = 0;
+			}
+			if (takeState) {
+				state++;
+			} else {
+				event++;
+			}
+			entries++;
+			bytes += size;
+		}
+		if (state == stateFrom && !chunks.isEmpty()) {
+			// no state after these events, they are added to the last window
+			chunks.remove(chunks.size() - 1);
+			stateFrom = lastStateFrom;
+			eventFrom = lastEventFrom;
+		}
+		chunks.add(batch.slice(stateFrom, state, eventFrom, event));
+		return chunks;
+	}
+
+	private static int estimateEvent(CodeContext context) {
+		return EVENT_SIZE + length(context.getMemberName()) + length(context.getPackageName())
+				+ length(context.getFile()) + length(context.getClassName());
+	}
+
+	private static int length(String value) {
+		return value != null ? value.length() : 0;
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.processing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.codealike.client.eclipse.internal.serialization.PayloadBuffer;
+import com.codealike.client.eclipse.internal.utils.LogManager;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Encodes batches into reusable payload buffers. Small flushes are encoded on
+ * the flushing thread. Flushes above {@link #PARALLEL_THRESHOLD} entries are
+ * encoded a window at a time on a small fork-join pool, one batch per worker,
+ * so only a window of encoded batches is held in memory. The pool has its own
+ * daemon workers and never runs on the display thread.
+ */
+public class ActivityBatchEncoder {
+	// flushes with fewer states and events are encoded sequentially
+	public static final int PARALLEL_THRESHOLD = 20000;
+
+	private static final int PARALLELISM = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	private static ForkJoinPool pool;
+
+	private final JsonFactory factory;
+	// one buffer per batch of a window
+	private final PayloadBuffer[] buffers = new PayloadBuffer[PARALLELISM];
+
+	public ActivityBatchEncoder(JsonFactory factory) {
+		this.factory = factory;
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = new PayloadBuffer();
+		}
+	}
+
+	/**
+	 * Get how many batches are encoded at once.
+	 *
+	 * @param batches all the batches of the flush
+	 * @return the window size
+	 */
+	public int getWindowSize(List<ActivityBatch> batches) {
+		int entries = 0;
+		for (ActivityBatch batch : batches) {
+			entries += batch.getStateCount() + batch.getEventCount();
+		}
+		return entries >= PARALLEL_THRESHOLD && batches.size() > 1 ? PARALLELISM : 1;
+	}
+
+	/**
+	 * Encode a window of batches. The returned buffers are reused by the next
+	 * call, so callers must be done with them and must not encode from several
+	 * threads at once.
+	 *
+	 * @param window       the batches to encode, at most the window size
+	 * @param contextTable true to write event contexts in a context table
+	 * @return the encoded batches, null where encoding failed
+	 */
+	public PayloadBuffer[] encode(List<ActivityBatch> window, final boolean contextTable) {
+		PayloadBuffer[] encoded = new PayloadBuffer[window.size()];
+		if (window.size() == 1) {
+			encoded[0] = encode(window.get(0), contextTable, buffers[0]);
+			return encoded;
+		}
+
+		List<Callable<PayloadBuffer>> tasks = new ArrayList<Callable<PayloadBuffer>>(window.size());
+		for (int i = 0; i < window.size(); i++) {
+			final ActivityBatch batch = window.get(i);
+			final PayloadBuffer buffer = buffers[i];
+			tasks.add(new Callable<PayloadBuffer>() {
+
+				@Override
+				public PayloadBuffer call() {
+					return encode(batch, contextTable, buffer);
+				}
+			});
+		}
+		List<Future<PayloadBuffer>> results = getPool().invokeAll(tasks);
+		for (int i = 0; i < results.size(); i++) {
+			try {
+				encoded[i] = results.get(i).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				LogManager.INSTANCE.logError(e.getCause(), "Could not encode activity batch.");
+			}
+		}
+		return encoded;
+	}
+
+	private PayloadBuffer encode(ActivityBatch batch, boolean contextTable, PayloadBuffer buffer) {
+		buffer.reset();
+		try {
+			JsonGenerator generator = factory.createGenerator(buffer);
+			batch.writeTo(generator, contextTable);
+			generator.close();
+			return buffer;
+		} catch (IOException e) {
+			LogManager.INSTANCE.logError(e, "Could not encode activity batch.");
+			return null;
+		}
+	}
+
+	private static synchronized ForkJoinPool getPool() {
+		if (pool == null) {
+			pool = new ForkJoinPool(PARALLELISM);
+		}
+		return pool;
+	}
+}
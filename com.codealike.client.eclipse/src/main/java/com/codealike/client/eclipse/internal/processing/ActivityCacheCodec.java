@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.processing;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+import com.codealike.client.eclipse.internal.model.ActivityStore;
+import com.codealike.client.eclipse.internal.model.ActivityTimeline;
+import com.codealike.client.eclipse.internal.model.CodeContext;
+import com.codealike.client.eclipse.internal.model.CodeContextDictionary;
+import com.codealike.client.eclipse.internal.serialization.TimeCodec;
+import com.codealike.client.eclipse.internal.serialization.TimeSeriesCodec;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Binary record format for batches kept locally, in the offline cache and in
+ * the history. A record starts with a magic number and a format version,
+ * followed by the batch fields, a project table, a context table, the states
+ * and the events. States and events are written column by column with the
+ * {@link TimeSeriesCodec}: projects and types as runs, starts as
+ * delta-of-deltas and durations as varints. The reader streams a record
+ * straight into the upload JSON layout, so no DTO graph or date parsing is
+ * involved when the cache is drained.
+ */
+public class ActivityCacheCodec {
+	public static final int VERSION = 2;
+
+	private static final byte[] MAGIC = { 'C', 'L', 'A', 'C' };
+	// upper bound of counts and string lengths, far above what a chunk holds
+	private static final int MAX_COUNT = 1 << 20;
+
+	private ActivityCacheCodec() {
+	}
+
+	/**
+	 * Write a batch as a cache record.
+	 *
+	 * @param batch  the batch to write
+	 * @param stream the stream to write to
+	 * @throws IOException if writing fails
+	 */
+	public static void write(ActivityBatch batch, OutputStream stream) throws IOException {
+		stream.write(MAGIC);
+		stream.write(VERSION);
+		writeString(stream, batch.getMachine());
+		writeString(stream, batch.getClient());
+		writeString(stream, batch.getExtension());
+		writeString(stream, batch.getInstance());
+		writeString(stream, batch.getProjectName());
+		writeUUID(stream, batch.getSolutionId());
+		writeUUID(stream, batch.getBatchId());
+
+		ActivityTimeline timeline = batch.getTimeline();
+		ActivityStore states = timeline != null ? timeline.getStates() : null;
+		ActivityStore events = timeline != null ? timeline.getEvents() : null;
+
+		// rows of both stores share one project table, events their context table
+		ProjectTable projects = new ProjectTable();
+		int[] stateProjects = new int[batch.getStateCount()];
+		for (int i = 0; i < stateProjects.length; i++) {
+			stateProjects[i] = projects.indexOf(states.getProjectId(batch.getStateRow(i)));
+		}
+		int[] eventProjects = new int[batch.getEventCount()];
+		int[] eventContexts = new int[batch.getEventCount()];
+		ActivityContextTable contexts = new ActivityContextTable();
+		for (int i = 0; i < eventProjects.length; i++) {
+			int row = batch.getEventRow(i);
+			eventProjects[i] = projects.indexOf(events.getProjectId(row));
+			eventContexts[i] = contexts.indexOf(eventProjects[i], events.getContextId(row));
+		}
+
+		writeVarLong(stream, projects.size);
+		for (int i = 0; i < projects.size; i++) {
+			writeUUID(stream, projects.ids[i]);
+		}
+
+		CodeContextDictionary dictionary = CodeContextDictionary.getInstance();
+		writeVarLong(stream, contexts.size());
+		for (int i = 0; i < contexts.size(); i++) {
+			CodeContext context = dictionary.get(contexts.getContextId(i));
+			writeVarLong(stream, contexts.getProjectIndex(i));
+			writeString(stream, context.getMemberName());
+			writeString(stream, context.getPackageName());
+			writeString(stream, context.getFile());
+			writeString(stream, context.getClassName());
+		}
+
+		// the columns are filled with the states, then reused for the events
+		int stateCount = stateProjects.length;
+		long[] starts = new long[Math.max(stateCount, eventProjects.length)];
+		long[] durations = new long[starts.length];
+		int[] types = new int[starts.length];
+		for (int i = 0; i < stateCount; i++) {
+			int row = batch.getStateRow(i);
+			starts[i] = states.getStart(row);
+			durations[i] = states.getEnd(row) - starts[i];
+			types[i] = states.getType(row).getId();
+		}
+		writeVarLong(stream, stateCount);
+		writeColumns(stream, stateProjects, starts, durations, types, stateCount);
+
+		int eventCount = eventProjects.length;
+		for (int i = 0; i < eventCount; i++) {
+			int row = batch.getEventRow(i);
+			starts[i] = events.getStart(row);
+			durations[i] = events.getEnd(row) - starts[i];
+			types[i] = events.getType(row).getId();
+		}
+		writeVarLong(stream, eventCount);
+		writeColumns(stream, eventProjects, starts, durations, types, eventCount);
+		for (int i = 0; i < eventCount; i++) {
+			writeVarLong(stream, eventContexts[i]);
+		}
+	}
+
+	/**
+	 * Check if a stream starts with a cache record. Reads the magic number.
+	 *
+	 * @param stream the stream to check
+	 * @return true if it is a cache record, false otherwise
+	 * @throws IOException if reading fails
+	 */
+	public static boolean isRecord(InputStream stream) throws IOException {
+		for (byte expected : MAGIC) {
+			if (stream.read() != expected) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Read a cache record and write it in the {@link ActivityBatch} upload
+	 * layout. The magic number must already have been read with
+	 * {@link #isRecord(InputStream)}.
+	 *
+	 * @param stream       the stream to read from
+	 * @param generator    the generator to write to
+	 * @param contextTable true to write a context table
+	 * @throws IOException if the record is not valid or reading or writing
+	 *                     fails
+	 */
+	public static void transcode(InputStream stream, JsonGenerator generator, boolean contextTable)
+			throws IOException {
+		int version = stream.read();
+		if (version != VERSION) {
+			throw new IOException(String.format("Unsupported cache record version %d.", version));
+		}
+		String machine = readString(stream);
+		String client = readString(stream);
+		String extension = readString(stream);
+		String instance = readString(stream);
+		String projectName = readString(stream);
+		UUID solutionId = readUUID(stream);
+		UUID batchId = readUUID(stream);
+
+		UUID[] projects = new UUID[readCount(stream)];
+		for (int i = 0; i < projects.length; i++) {
+			projects[i] = readUUID(stream);
+		}
+
+		int contextCount = readCount(stream);
+		UUID[] contextProjects = new UUID[contextCount];
+		String[] contextValues = new String[contextCount * 4];
+		for (int i = 0; i < contextCount; i++) {
+			contextProjects[i] = projects[readIndex(stream, projects.length)];
+			for (int j = 0; j < 4; j++) {
+				contextValues[i * 4 + j] = readString(stream);
+			}
+		}
+
+		char[] buffer = new char[TimeCodec.MAX_LENGTH];
+		ActivityBatch.writeHeader(generator, machine, client, extension, solutionId, projectName);
+
+		int stateCount = readCount(stream);
+		Columns columns = new Columns(stateCount);
+		columns.read(stream, projects.length);
+		generator.writeArrayFieldStart("states");
+		for (int i = 0; i < stateCount; i++) {
+			generator.writeStartObject();
+			columns.writeEntry(generator, buffer, projects, i);
+			generator.writeEndObject();
+		}
+		generator.writeEndArray();
+
+		int eventCount = readCount(stream);
+		columns = new Columns(eventCount);
+		columns.read(stream, projects.length);
+		if (contextTable && eventCount > 0) {
+			generator.writeArrayFieldStart("contexts");
+			for (int i = 0; i < contextCount; i++) {
+				writeContext(generator, contextProjects, contextValues, i);
+			}
+			generator.writeEndArray();
+		}
+
+		generator.writeArrayFieldStart("events");
+		for (int i = 0; i < eventCount; i++) {
+			generator.writeStartObject();
+			columns.writeEntry(generator, buffer, projects, i);
+			int context = readIndex(stream, contextCount);
+			if (contextTable) {
+				generator.writeNumberField("context", context);
+			} else {
+				generator.writeFieldName("context");
+				writeContext(generator, contextProjects, contextValues, context);
+			}
+			generator.writeEndObject();
+		}
+		generator.writeEndArray();
+
+		ActivityBatch.writeFooter(generator, instance, solutionId, batchId);
+	}
+
+	private static void writeColumns(OutputStream stream, int[] projects, long[] starts, long[] durations,
+			int[] types, int count) throws IOException {
+		TimeSeriesCodec.writeRuns(stream, projects, count);
+		TimeSeriesCodec.writeTimestamps(stream, starts, count);
+		TimeSeriesCodec.writeVarLongs(stream, durations, count);
+		TimeSeriesCodec.writeRuns(stream, types, count);
+	}
+
+	private static void writeContext(JsonGenerator generator, UUID[] projects, String[] values, int index)
+			throws IOException {
+		ActivityBatch.writeContext(generator, values[index * 4], values[index * 4 + 1], projects[index],
+				values[index * 4 + 2], values[index * 4 + 3]);
+	}
+
+	private static void writeString(OutputStream stream, String value) throws IOException {
+		if (value == null) {
+			writeVarLong(stream, 0);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarLong(stream, bytes.length + 1L);
+		stream.write(bytes);
+	}
+
+	private static String readString(InputStream stream) throws IOException {
+		long length = readVarLong(stream);
+		if (length == 0) {
+			return null;
+		}
+		if (length < 0 || length - 1 > MAX_COUNT) {
+			throw new IOException("Cache record string is too long.");
+		}
+		return new String(readBytes(stream, (int) (length - 1)), StandardCharsets.UTF_8);
+	}
+
+	private static void writeUUID(OutputStream stream, UUID value) throws IOException {
+		writeLong(stream, value.getMostSignificantBits());
+		writeLong(stream, value.getLeastSignificantBits());
+	}
+
+	private static UUID readUUID(InputStream stream) throws IOException {
+		byte[] bytes = readBytes(stream, 16);
+		return new UUID(toLong(bytes, 0), toLong(bytes, 8));
+	}
+
+	private static void writeLong(OutputStream stream, long value) throws IOException {
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			stream.write((int) (value >>> shift));
+		}
+	}
+
+	private static long toLong(byte[] bytes, int offset) {
+		long value = 0;
+		for (int i = offset; i < offset + 8; i++) {
+			value = (value << 8) | (bytes[i] & 0xff);
+		}
+		return value;
+	}
+
+	private static int readCount(InputStream stream) throws IOException {
+		long count = readVarLong(stream);
+		if (count < 0 || count > MAX_COUNT) {
+			throw new IOException("Cache record count is out of range.");
+		}
+		return (int) count;
+	}
+
+	private static int readIndex(InputStream stream, int size) throws IOException {
+		long index = readVarLong(stream);
+		if (index < 0 || index >= size) {
+			throw new IOException(String.format("Cache record index %d is out of range.", index));
+		}
+		return (int) index;
+	}
+
+	private static void writeVarLong(OutputStream stream, long value) throws IOException {
+		TimeSeriesCodec.writeVarLong(stream, value);
+	}
+
+	private static long readVarLong(InputStream stream) throws IOException {
+		return TimeSeriesCodec.readVarLong(stream);
+	}
+
+	private static byte[] readBytes(InputStream stream, int length) throws IOException {
+		byte[] bytes = new byte[length];
+		int read = 0;
+		while (read < length) {
+			int count = stream.read(bytes, read, length - read);
+			if (count < 0) {
+				throw new EOFException("Cache record is truncated.");
+			}
+			read += count;
+		}
+		return bytes;
+	}
+
+	// states or events of a record, read column by column
+	private static class Columns {
+		private final int count;
+		private final int[] projects;
+		private final long[] starts;
+		private final long[] durations;
+		private final int[] types;
+
+		Columns(int count) {
+			this.count = count;
+			this.projects = new int[count];
+			this.starts = new long[count];
+			this.durations = new long[count];
+			this.types = new int[count];
+		}
+
+		void read(InputStream stream, int projectCount) throws IOException {
+			TimeSeriesCodec.readRuns(stream, projects, count);
+			TimeSeriesCodec.readTimestamps(stream, starts, count);
+			TimeSeriesCodec.readVarLongs(stream, durations, count);
+			TimeSeriesCodec.readRuns(stream, types, count);
+			for (int i = 0; i < count; i++) {
+				if (projects[i] < 0 || projects[i] >= projectCount) {
+					throw new IOException(String.format("Cache record index %d is out of range.", projects[i]));
+				}
+			}
+		}
+
+		// writes the common entry fields of an open entry object
+		void writeEntry(JsonGenerator generator, char[] buffer, UUID[] projectIds, int index) throws IOException {
+			ActivityBatch.writeEntry(generator, buffer, projectIds[projects[index]], starts[index],
+					starts[index] + durations[index], types[index]);
+		}
+	}
+
+	// project ids of a record, in order of first use
+	private static class ProjectTable {
+		private UUID[] ids = new UUID[4];
+		private int size;
+
+		int indexOf(UUID projectId) {
+			for (int i = 0; i < size; i++) {
+				if (ids[i].equals(projectId)) {
+					return i;
+				}
+			}
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			ids[size] = projectId;
+			return size++;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.processing;
+
+import java.util.Arrays;
+
+/**
+ * Table of the distinct code contexts referenced by the events of a batch.
+ * Contexts are numbered in the order they are first seen, keyed by project
+ * index and {@link com.codealike.client.eclipse.internal.model.CodeContextDictionary}
+ * id. Lookups use an open-addressing table of primitive keys.
+ */
+public class ActivityContextTable {
+	private static final long EMPTY = -1;
+
+	// hash table of keys and the table index stored for each
+	private long[] keys = new long[64];
+	private int[] slots = new int[64];
+	// project index and context id of each table entry, in table order
+	private int[] projectIndices = new int[32];
+	private int[] contextIds = new int[32];
+	private int size;
+
+	public ActivityContextTable() {
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**
+	 * Get the table index of a context, adding it if it was not seen yet.
+	 *
+	 * @param projectIndex the project index of the event row
+	 * @param contextId    the context id of the event row
+	 * @return the table index
+	 */
+	public int indexOf(int projectIndex, int contextId) {
+		long key = ((long) projectIndex << 32) | (contextId & 0xffffffffL);
+		int mask = keys.length - 1;
+		int slot = spread(key) & mask;
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				return slots[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		if (size == projectIndices.length) {
+			projectIndices = Arrays.copyOf(projectIndices, size * 2);
+			contextIds = Arrays.copyOf(contextIds, size * 2);
+		}
+		projectIndices[size] = projectIndex;
+		contextIds[size] = contextId;
+		keys[slot] = key;
+		slots[slot] = size;
+		if (++size * 2 > keys.length) {
+			rehash();
+		}
+		return size - 1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getProjectIndex(int index) {
+		return projectIndices[index];
+	}
+
+	public int getContextId(int index) {
+		return contextIds[index];
+	}
+
+	private void rehash() {
+		long[] oldKeys = keys;
+		int[] oldSlots = slots;
+		keys = new long[oldKeys.length * 2];
+		slots = new int[oldKeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = spread(oldKeys[i]) & mask;
+				while (keys[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				slots[slot] = oldSlots[i];
+			}
+		}
+	}
+
+	private static int spread(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+}
@@ -3,297 +3,103 @@
  */
 package com.codealike.client.eclipse.internal.processing;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
-import java.util.UUID;
 
-import org.joda.time.DateTime;
-import org.joda.time.Period;
-
-import com.codealike.client.eclipse.internal.dto.ActivityEntryInfo;
-import com.codealike.client.eclipse.internal.dto.ActivityInfo;
 import com.codealike.client.eclipse.internal.dto.ActivityType;
-import com.codealike.client.eclipse.internal.dto.CodeContextInfo;
-import com.codealike.client.eclipse.internal.dto.ProjectContextInfo;
-import com.codealike.client.eclipse.internal.model.ActivityEvent;
-import com.codealike.client.eclipse.internal.model.ActivityState;
-import com.codealike.client.eclipse.internal.model.BuildActivityEvent;
-import com.codealike.client.eclipse.internal.model.NullActivityState;
+import com.codealike.client.eclipse.internal.model.ActivityTimeline;
 import com.codealike.client.eclipse.internal.startup.PluginContext;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 
 /**
- * Class to process activity information.
+ * Class to process activity information. Timelines arrive already processed
+ * by {@link IncrementalActivityProcessor}, so this only groups them into
+ * batches.
  *
  * @author Daniel, pvmagacho
  * @version 1.5.0.2
  */
 public class ActivityInfoProcessor {
-    // the build events map
-    private final Map<UUID, BuildActivityEvent> buildEvents = new HashMap<UUID, BuildActivityEvent>();
-    // list of processed states
-    private final List<ActivityState> processedStates;
-    // list of processed events
-    private final List<ActivityEvent> processedEvents;
-	
+	// recorded timelines, one per project
+	private final List<ActivityTimeline> timelines;
+
 	/**
 	 * Activity information processor constructor
 	 *
-	 * @param states the states to process
-	 * @param events the events to process
+	 * @param timelines the per project timelines to process
 	 */
-	public ActivityInfoProcessor(TreeMap<DateTime, List<ActivityState>> states,
-			TreeMap<DateTime, List<ActivityEvent>> events) {
-		this.processedStates = processStates(states);
-		this.processedEvents = processEvents(events);
+	public ActivityInfoProcessor(List<ActivityTimeline> timelines) {
+		this.timelines = timelines;
 	}
-	
+
 	/**
 	 * Check if process is valid - process states list not empty.
 	 *
 	 * @return true if valid, false otherwise
 	 */
 	public boolean isValid() {
-        return this.processedStates != null && !this.processedStates.isEmpty();
-    }
-
-	/**
-     * Create a list of activity information
-     *
-     * @param machineName  the machine name
-     * @param instanceName the instance name
-     * @param client       the client name
-     * @param extension    the extension name
-     * @return a list of {@link ActivityInfo} instances
-     */
-	public List<ActivityInfo> getSerializableEntities(String machineName, String instanceName, String client,
-			String extension) {
-		List<ProjectContextInfo> projects = getProjectsInfo(this.processedEvents);
-		List<ActivityInfo> activity = new LinkedList<ActivityInfo>();
-
-		for (ProjectContextInfo project : projects) {
-			UUID batchId = UUID.randomUUID();
-			ActivityInfo activityInfo = new ActivityInfo(instanceName, project.getProjectId(), batchId);
-			activityInfo.setMachine(machineName);
-			activityInfo.setClient(client);
-			activityInfo.setExtension(extension);
-			List<ProjectContextInfo> projectsOfThisProject = new LinkedList<ProjectContextInfo>();
-			projectsOfThisProject.add(project);
-			activityInfo.setProjects(projectsOfThisProject);
-			activityInfo.setStates(getBatchStates(this.processedStates, project.getProjectId()));
-			activityInfo.setEvents(getBatchEvents(this.processedEvents, project.getProjectId()));
-
-			activity.add(activityInfo);
+		for (ActivityTimeline timeline : timelines) {
+			if (timeline.getProcessedStateCount() > 0) {
+				return true;
+			}
 		}
-
-		return activity;
+		return false;
 	}
 
 	/**
-     * Checks the last registered activity is not only idle.
-     *
-     * @return true if last activity was not idle, false otherwise
-     */
-	public boolean isActivityValid(List<ActivityInfo> activity) {
-		Collection<ActivityInfo> filtered = Collections2.filter(activity, new Predicate<ActivityInfo>() {
-
-			@Override
-			public boolean apply(ActivityInfo a) {
-				for (ActivityEntryInfo state : a.getStates()) {
-					return state.getType() != ActivityType.Idle;
-				}
-				return false;
-			}
-		});
-		return !filtered.isEmpty();
-	}
-
-	private List<ActivityEntryInfo> getBatchEvents(List<ActivityEvent> processedEvents, UUID projectId) {
-		List<ActivityEntryInfo> batchEvents = new LinkedList<ActivityEntryInfo>();
-
-		for (ActivityEvent state : processedEvents) {
-			if (state.getProjectId() != projectId) {
-				continue;
+	 * Create the batches of processed activity, one per project with processed
+	 * events plus the unassigned project.
+	 *
+	 * @param machineName  the machine name
+	 * @param instanceName the instance name
+	 * @param client       the client name
+	 * @param extension    the extension name
+	 * @return a list of {@link ActivityBatch} instances
+	 */
+	public List<ActivityBatch> getBatches(String machineName, String instanceName, String client,
+			String extension) {
+		List<ActivityBatch> activity = new ArrayList<ActivityBatch>(timelines.size() + 1);
+		ActivityTimeline unassigned = null;
+		boolean unassignedListed = false;
+
+		for (ActivityTimeline timeline : timelines) {
+			boolean isUnassigned = PluginContext.UNASSIGNED_PROJECT.equals(timeline.getProjectId());
+			if (isUnassigned) {
+				unassigned = timeline;
 			}
-			ActivityEntryInfo info = new ActivityEntryInfo(state.getProjectId());
-			info.setStart(state.getCreationTime());
-			info.setEnd(state.getCreationTime().plus(state.getDuration()));
-			info.setType(state.getType());
-			info.setDuration(state.getDuration());
-			CodeContextInfo context = new CodeContextInfo(state.getProjectId());
-			context.setNamespace(state.getContext().getPackageName());
-			context.setClass(state.getContext().getClassName());
-			context.setMember(state.getContext().getMemberName());
-			context.setFile(state.getContext().getFile());
-
-			info.setContext(context);
-
-			batchEvents.add(info);
-		}
-
-		return batchEvents;
-	}
-
-	private List<ActivityEntryInfo> getBatchStates(List<ActivityState> processedStates, UUID projectId) {
-		List<ActivityEntryInfo> batchStates = new LinkedList<ActivityEntryInfo>();
-
-		for (ActivityState event : processedStates) {
-			if (event.getProjectId() != projectId) {
+			if (timeline.getProcessedEventCount() == 0) {
 				continue;
 			}
-			ActivityEntryInfo info = new ActivityEntryInfo(event.getProjectId());
-			info.setStart(event.getCreationTime());
-			info.setEnd(event.getCreationTime().plus(event.getDuration()));
-			info.setType(event.getType());
-			info.setDuration(event.getDuration());
-
-			batchStates.add(info);
-		}
-
-		return batchStates;
-	}
+			unassignedListed |= isUnassigned;
 
-	private List<ActivityEvent> processEvents(TreeMap<DateTime, List<ActivityEvent>> events) {
-		List<ActivityEvent> processedEvents = new LinkedList<ActivityEvent>();
-
-		if (events == null || events.isEmpty()) {
-			return processedEvents;
+			String projectName = timeline.getEvents().getContext(timeline.getProcessedEvent(0)).getProject();
+			activity.add(new ActivityBatch(machineName, client, extension, instanceName, timeline.getProjectId(),
+					projectName, timeline));
 		}
 
-		Iterator<DateTime> it = events.keySet().iterator();
-
-		DateTime lastDate = it.next();
-		List<ActivityEvent> lastEvents = events.get(lastDate);
-		for (ActivityEvent lastEvent : lastEvents) {
-			if (lastEvent.getType() != ActivityType.Event) {
-				processedEvents.add(lastEvent);
-			}
+		if (!unassignedListed) {
+			activity.add(new ActivityBatch(machineName, client, extension, instanceName,
+					PluginContext.UNASSIGNED_PROJECT, "Unassigned", unassigned));
 		}
 
-		for (Iterator<DateTime> iterator = it; iterator.hasNext();) {
-			DateTime currentDate = iterator.next();
-			List<ActivityEvent> currentEvents = events.get(currentDate);
-
-			for (ActivityEvent lastEvent : lastEvents) {
-				if (!lastEvent.isMarker() && lastEvent.getDuration().equals(Period.ZERO)) {
-					lastEvent.setDuration(new Period(lastEvent.getCreationTime(), currentDate));
-				}
-			}
-
-			for (ActivityEvent currentEvent : currentEvents) {
-				if (currentEvent.isBuildEvent()) {
-					BuildActivityEvent buildEvent = tryToProcessBuildEvent((BuildActivityEvent) currentEvent);
-					if (buildEvent != null) {
-						processedEvents.add(buildEvent);
-					}
-				} else if (currentEvent.getType() != ActivityType.Event) {
-					processedEvents.add(currentEvent);
-				}
-			}
-
-			lastEvents = currentEvents;
-		}
-
-		return processedEvents;
-	}
-
-	private BuildActivityEvent tryToProcessBuildEvent(BuildActivityEvent currentEvent) {
-		BuildActivityEvent eventToReturn = null;
-		if (currentEvent.getType() == ActivityType.BuildProject) {
-			buildEvents.put(currentEvent.getProjectId(), currentEvent);
-		} else if (currentEvent.getType() == ActivityType.BuildProjectSucceeded
-				|| currentEvent.getType() == ActivityType.BuildProjectFailed
-				|| currentEvent.getType() == ActivityType.BuildSolutionCancelled) {
-			BuildActivityEvent event = buildEvents.get(currentEvent.getProjectId());
-			if (event != null) {
-				buildEvents.remove(currentEvent.getProjectId());
-
-				currentEvent.setDuration(new Period(event.getCreationTime(), currentEvent.getCreationTime()));
-				currentEvent.setCreationTime(event.getCreationTime());
-
-				eventToReturn = currentEvent;
-			}
-		} else if (currentEvent.getType() == ActivityType.BuildSolutionSucceded
-				|| currentEvent.getType() == ActivityType.BuildSolutionFailed
-				|| currentEvent.getType() == ActivityType.BuildSolutionCancelled) {
-			eventToReturn = currentEvent;
-		}
-		return eventToReturn;
-	}
-
-	private List<ActivityState> processStates(TreeMap<DateTime, List<ActivityState>> states) {
-
-		List<ActivityState> processedStates = new LinkedList<ActivityState>();
-
-		if (states == null || states.isEmpty()) {
-			return processedStates;
-		}
-
-		Iterator<DateTime> it = states.keySet().iterator();
-
-		DateTime lastDate = it.next();
-		List<ActivityState> lastStates = states.get(lastDate);
-		for (ActivityState lastState : lastStates) {
-			if (!(lastState instanceof NullActivityState)) {
-				processedStates.add(lastState);
-			}
-		}
-
-		for (Iterator<DateTime> iterator = it; iterator.hasNext();) {
-			DateTime currentDate = iterator.next();
-			List<ActivityState> currentStates = states.get(currentDate);
-			if (currentStates.isEmpty()) {
-				continue;
-			}
-
-			// TODO: think what to do with this code.
-			// Since we need to take into account the projects for merging states.
-
-//			ActivityState lastCurrentState = currentStates.get(currentStates.size()-1);
-//			for (ActivityState lastState : lastStates) {
-//				if (lastState.canExpand() && lastCurrentState.canShrink()) {
-//		        	 DateTime creation = lastCurrentState.getCreationTime();
-//		        	 if (lastCurrentState.getDuration().toDurationFrom(creation).isLongerThan(THRESHOLD.toDurationFrom(creation)))
-//	                 {
-//		        		 lastState.setDuration(new Period(lastState.getCreationTime(), currentDate));
-//	                     continue;
-//	                 }
-//		         }
-//			}
-
-			for (ActivityState currentState : currentStates) {
-				if (!(currentState instanceof NullActivityState)) {
-					processedStates.add(currentState);
-				}
-			}
-		}
-
-		return processedStates;
+		return activity;
 	}
 
-	private List<ProjectContextInfo> getProjectsInfo(List<ActivityEvent> processedEvents) {
-		List<UUID> projectIds = new LinkedList<UUID>();
-		List<ProjectContextInfo> projectsInfo = new LinkedList<ProjectContextInfo>();
-
-		for (ActivityEvent event : processedEvents) {
-			if (!projectIds.contains(event.getProjectId())) {
-				projectIds.add(event.getProjectId());
+	/**
+	 * Checks the last registered activity is not only idle.
+	 *
+	 * @return true if last activity was not idle, false otherwise
+	 */
+	public boolean isActivityValid(List<ActivityBatch> activity) {
+		Collection<ActivityBatch> filtered = Collections2.filter(activity, new Predicate<ActivityBatch>() {
 
-				projectsInfo.add(new ProjectContextInfo(event.getProjectId(), event.getContext().getProject()));
+			@Override
+			public boolean apply(ActivityBatch a) {
+				return a.getStateCount() > 0 && a.getStateType(0) != ActivityType.Idle;
 			}
-		}
-
-		if (!projectIds.contains(PluginContext.UNASSIGNED_PROJECT)) {
-			projectsInfo.add(new ProjectContextInfo(PluginContext.UNASSIGNED_PROJECT, "Unassigned"));
-		}
-
-		return projectsInfo;
+		});
+		return !filtered.isEmpty();
 	}
-
 }
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.processing;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import com.codealike.client.eclipse.internal.dto.ActivityType;
+import com.codealike.client.eclipse.internal.model.ActivityStore;
+import com.codealike.client.eclipse.internal.model.ActivityTimeline;
+import com.codealike.client.eclipse.internal.model.CodeContext;
+import com.codealike.client.eclipse.internal.services.ServiceListener;
+
+/**
+ * Session wide totals of the time spent per project, namespace, class, member
+ * and file, and per kind of activity. Processed states and events are added
+ * when they are flushed, split into per-minute and per-day buckets of local
+ * time kept in open addressing tables of longs, so totals are answered with a
+ * couple of lookups and without reading the history.
+ * <p>
+ * Totals are not persisted and start over with every session, so only the
+ * buckets of today and yesterday are kept.
+ */
+public class ActivityRollup {
+	private static final long MINUTE = 60 * 1000;
+	private static final long DAY = 24 * 60 * MINUTE;
+	// how long per-minute and per-day totals are kept, sessions may span midnight
+	private static final long RETENTION = 2 * DAY;
+
+	/**
+	 * What totals are grouped by. Activity totals are grouped by state type,
+	 * the others by the context of events.
+	 */
+	public enum Dimension {
+		Project, Namespace, Class, Member, File, Activity
+	}
+
+	private static final Dimension[] DIMENSIONS = Dimension.values();
+	private static final ActivityRollup _instance = new ActivityRollup();
+
+	// key ids per dimension and label, ids start at 1
+	private final List<Map<String, Integer>> keys = new ArrayList<Map<String, Integer>>();
+	private int keyCount;
+	// milliseconds per key id and minute or day bucket
+	private Totals minutes = new Totals(1024);
+	private Totals days = new Totals(256);
+	// the day of the last prune
+	private long prunedDay = -1;
+
+	private final List<ServiceListener> listeners = new ArrayList<ServiceListener>();
+
+	public static ActivityRollup getInstance() {
+		return _instance;
+	}
+
+	private ActivityRollup() {
+		for (int i = 0; i < DIMENSIONS.length; i++) {
+			keys.add(new HashMap<String, Integer>());
+		}
+	}
+
+	public synchronized void addListener(ServiceListener listener) {
+		listeners.add(listener);
+	}
+
+	public synchronized void removeListener(ServiceListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Add the processed states and events of flushed timelines to the totals.
+	 *
+	 * @param timelines the flushed timelines
+	 */
+	public void add(List<ActivityTimeline> timelines) {
+		List<ServiceListener> toNotify;
+		synchronized (this) {
+			for (ActivityTimeline timeline : timelines) {
+				ActivityStore states = timeline.getStates();
+				for (int i = 0; i < timeline.getProcessedStateCount(); i++) {
+					int row = timeline.getProcessedState(i);
+					// idle time is not time spent on anything
+					if (states.getType(row) != ActivityType.Idle && states.getDuration(row) > 0) {
+						add(new int[] { key(Dimension.Activity, states.getType(row).name()) }, states.getStart(row),
+								states.getEnd(row));
+					}
+				}
+				ActivityStore events = timeline.getEvents();
+				for (int i = 0; i < timeline.getProcessedEventCount(); i++) {
+					int row = timeline.getProcessedEvent(i);
+					CodeContext context = events.getContext(row);
+					if (context != null && events.getDuration(row) > 0) {
+						add(context, events.getStart(row), events.getEnd(row));
+					}
+				}
+			}
+			toNotify = new ArrayList<ServiceListener>(listeners);
+		}
+		for (ServiceListener listener : toNotify) {
+			listener.onEvent();
+		}
+	}
+
+	private void add(CodeContext context, long start, long end) {
+		String project = valueOf(context.getProject());
+		String namespace = project + "/" + valueOf(context.getPackageName());
+		String className = namespace + "." + valueOf(context.getClassName());
+		int[] contextKeys = { key(Dimension.Project, project), key(Dimension.Namespace, namespace),
+				key(Dimension.Class, className), key(Dimension.Member, className + "." + valueOf(context.getMemberName())),
+				key(Dimension.File, project + "/" + valueOf(context.getFile())) };
+		add(contextKeys, start, end);
+	}
+
+	private void add(int[] keys, long start, long end) {
+		// buckets are split in local time, so days start at local midnight
+		long from = local(start);
+		long localEnd = local(end);
+		while (from < localEnd) {
+			long minute = from / MINUTE;
+			long to = Math.min(localEnd, (minute + 1) * MINUTE);
+			long day = from / DAY;
+			for (int key : keys) {
+				minutes.add(bucket(key, minute), to - from);
+				days.add(bucket(key, day), to - from);
+			}
+			from = to;
+		}
+		prune(localEnd / DAY);
+	}
+
+	private int key(Dimension dimension, String label) {
+		Map<String, Integer> dimensionKeys = keys.get(dimension.ordinal());
+		Integer key = dimensionKeys.get(label);
+		if (key == null) {
+			key = ++keyCount;
+			dimensionKeys.put(label, key);
+		}
+		return key;
+	}
+
+	private static String valueOf(String value) {
+		return value != null ? value : "";
+	}
+
+	/**
+	 * Drop the buckets past their retention, once a day.
+	 */
+	private void prune(long today) {
+		if (today <= prunedDay) {
+			return;
+		}
+		prunedDay = today;
+		minutes = minutes.retain(today * (DAY / MINUTE) - (RETENTION - DAY) / MINUTE);
+		days = days.retain(today - (RETENTION - DAY) / DAY);
+	}
+
+	/**
+	 * Get the time spent on a label during the day of the given date.
+	 *
+	 * @param dimension the dimension of the label
+	 * @param label     the project name, namespace, class, member or file
+	 * @param date      any time of the day in epoch millis
+	 * @return the total in millis
+	 */
+	public synchronized long getDayTotal(Dimension dimension, String label, long date) {
+		Integer key = keys.get(dimension.ordinal()).get(label);
+		return key != null ? days.get(bucket(key, local(date) / DAY)) : 0;
+	}
+
+	/**
+	 * Get the time spent on a label during the minute of the given date.
+	 *
+	 * @param dimension the dimension of the label
+	 * @param label     the project name, namespace, class, member or file
+	 * @param date      any time of the minute in epoch millis
+	 * @return the total in millis
+	 */
+	public synchronized long getMinuteTotal(Dimension dimension, String label, long date) {
+		Integer key = keys.get(dimension.ordinal()).get(label);
+		return key != null ? minutes.get(bucket(key, local(date) / MINUTE)) : 0;
+	}
+
+	/**
+	 * Get the labels of a dimension with time spent during the day of the given
+	 * date, longest first.
+	 *
+	 * @param dimension the dimension
+	 * @param date      any time of the day in epoch millis
+	 * @param limit     the maximum number of labels
+	 * @return the totals in millis by label
+	 */
+	public synchronized Map<String, Long> getDayTotals(Dimension dimension, long date, int limit) {
+		long day = local(date) / DAY;
+		List<Map.Entry<String, Long>> totals = new ArrayList<Map.Entry<String, Long>>();
+		for (Map.Entry<String, Integer> label : keys.get(dimension.ordinal()).entrySet()) {
+			long total = days.get(bucket(label.getValue(), day));
+			if (total > 0) {
+				totals.add(new AbstractMap.SimpleImmutableEntry<String, Long>(label.getKey(), total));
+			}
+		}
+		Collections.sort(totals, new Comparator<Map.Entry<String, Long>>() {
+
+			@Override
+			public int compare(Map.Entry<String, Long> first, Map.Entry<String, Long> second) {
+				return second.getValue().compareTo(first.getValue());
+			}
+		});
+
+		Map<String, Long> result = new LinkedHashMap<String, Long>();
+		for (Map.Entry<String, Long> total : totals.subList(0, Math.min(limit, totals.size()))) {
+			result.put(total.getKey(), total.getValue());
+		}
+		return result;
+	}
+
+	private static long local(long date) {
+		return date + TimeZone.getDefault().getOffset(date);
+	}
+
+	private static long bucket(int key, long index) {
+		return ((long) key << 32) | (index & 0xffffffffL);
+	}
+
+	/**
+	 * Open addressing table from bucket to total. Keys are never 0 since key ids
+	 * start at 1, so 0 marks an empty slot.
+	 */
+	private static class Totals {
+		private long[] buckets;
+		private long[] values;
+		private int size;
+
+		Totals(int capacity) {
+			this.buckets = new long[capacity];
+			this.values = new long[capacity];
+		}
+
+		long get(long bucket) {
+			int mask = buckets.length - 1;
+			int slot = spread(bucket) & mask;
+			while (buckets[slot] != 0) {
+				if (buckets[slot] == bucket) {
+					return values[slot];
+				}
+				slot = (slot + 1) & mask;
+			}
+			return 0;
+		}
+
+		void add(long bucket, long value) {
+			int mask = buckets.length - 1;
+			int slot = spread(bucket) & mask;
+			while (buckets[slot] != 0) {
+				if (buckets[slot] == bucket) {
+					values[slot] += value;
+					return;
+				}
+				slot = (slot + 1) & mask;
+			}
+			buckets[slot] = bucket;
+			values[slot] = value;
+			if (++size * 2 > buckets.length) {
+				Totals rehashed = copy(buckets.length * 2, Long.MIN_VALUE);
+				buckets = rehashed.buckets;
+				values = rehashed.values;
+			}
+		}
+
+		/**
+		 * Copy the buckets with an index from the given one on.
+		 */
+		Totals retain(long oldest) {
+			int capacity = buckets.length;
+			while (capacity > 256 && size * 4 < capacity) {
+				capacity >>= 1;
+			}
+			return copy(capacity, oldest);
+		}
+
+		private Totals copy(int capacity, long oldest) {
+			Totals copy = new Totals(capacity);
+			for (int slot = 0; slot < buckets.length; slot++) {
+				if (buckets[slot] != 0 && (buckets[slot] & 0xffffffffL) >= oldest) {
+					copy.put(buckets[slot], values[slot]);
+				}
+			}
+			return copy;
+		}
+
+		private void put(long bucket, long value) {
+			int mask = buckets.length - 1;
+			int slot = spread(bucket) & mask;
+			while (buckets[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			buckets[slot] = bucket;
+			values[slot] = value;
+			size++;
+		}
+
+		private static int spread(long bucket) {
+			long hash = bucket * 0x9E3779B97F4A7C15L;
+			return (int) (hash ^ (hash >>> 32));
+		}
+	}
+}
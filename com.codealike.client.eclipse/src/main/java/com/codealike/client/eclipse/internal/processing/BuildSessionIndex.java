@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.processing;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Index of the builds in flight per project. It outlives flushes, so a build
+ * started before a flush is still paired with its finish after it. A project
+ * may have several builds in flight, finishes are paired with the oldest one.
+ * Starts that never see their finish expire after the configured timeout.
+ */
+public class BuildSessionIndex {
+	private final long timeout;
+	private final Map<UUID, Sessions> sessions = new HashMap<UUID, Sessions>();
+
+	/**
+	 * Build session index constructor
+	 *
+	 * @param timeout the time in millis after which an unfinished build expires
+	 */
+	public BuildSessionIndex(long timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Register a build start.
+	 *
+	 * @param projectId the project being built
+	 * @param start     the build start in epoch millis
+	 */
+	public void start(UUID projectId, long start) {
+		Sessions projectSessions = sessions.get(projectId);
+		if (projectSessions == null) {
+			projectSessions = new Sessions();
+			sessions.put(projectId, projectSessions);
+		}
+		projectSessions.expire(start - timeout);
+		projectSessions.add(start);
+	}
+
+	/**
+	 * Take the oldest build in flight for a project.
+	 *
+	 * @param projectId the project that finished building
+	 * @param end       the build finish in epoch millis
+	 * @return the start of the paired build, or -1 if there is none
+	 */
+	public long finish(UUID projectId, long end) {
+		Sessions projectSessions = sessions.get(projectId);
+		if (projectSessions == null) {
+			return -1;
+		}
+		projectSessions.expire(end - timeout);
+		return projectSessions.isEmpty() ? -1 : projectSessions.poll();
+	}
+
+	/**
+	 * Drop the expired builds and the projects left without builds in flight.
+	 *
+	 * @param now the current time in epoch millis
+	 */
+	public void expire(long now) {
+		Iterator<Sessions> iterator = sessions.values().iterator();
+		while (iterator.hasNext()) {
+			Sessions projectSessions = iterator.next();
+			projectSessions.expire(now - timeout);
+			if (projectSessions.isEmpty()) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Build starts of a project, oldest first, in a small ring of longs.
+	 */
+	private static class Sessions {
+		private long[] starts = new long[2];
+		private int head;
+		private int size;
+
+		void add(long start) {
+			if (size == starts.length) {
+				long[] grown = new long[size * 2];
+				for (int i = 0; i < size; i++) {
+					grown[i] = starts[(head + i) % starts.length];
+				}
+				starts = grown;
+				head = 0;
+			}
+			starts[(head + size++) % starts.length] = start;
+		}
+
+		long poll() {
+			long start = starts[head];
+			head = (head + 1) % starts.length;
+			size--;
+			return start;
+		}
+
+		void expire(long oldest) {
+			while (size > 0 && starts[head] < oldest) {
+				poll();
+			}
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.processing;
+
+import java.util.Arrays;
+
+import com.codealike.client.eclipse.internal.dto.ActivityType;
+import com.codealike.client.eclipse.internal.model.ActivityStore;
+import com.codealike.client.eclipse.internal.model.ActivityTimeline;
+
+/**
+ * Processes states and events as they are recorded, so a flush only has to
+ * hand over the rows already marked as processed in each timeline. Entries
+ * must be recorded in time order, which replaces the k-way merge of the
+ * timelines that used to run at flush.
+ * <p>
+ * States are compacted once they are closed: a state is merged into the
+ * previous state of its project when both have the same type, and a short
+ * shrinkable state is absorbed by a previous state that can expand. Null
+ * states are never processed. An event closes the
+ * events recorded at the previous timestamp, build finishes are paired with
+ * a build start of their project through a {@link BuildSessionIndex} and
+ * marker events are dropped.
+ */
+public class IncrementalActivityProcessor {
+	// largest gap between two states of the same type that are merged
+	private final long stateMergeGap;
+	// shrinkable states shorter than this are absorbed by the previous state
+	private final long minStateDuration;
+	// builds in flight, kept across flushes
+	private final BuildSessionIndex builds;
+	// states added so far to any timeline, null states included
+	private long stateSequence;
+
+	// events recorded at the current event timestamp
+	private ActivityTimeline[] groupTimelines = new ActivityTimeline[8];
+	private int[] groupRows = new int[8];
+	private int groupSize;
+	private long groupDate = -1;
+
+	/**
+	 * Incremental processor constructor
+	 *
+	 * @param stateMergeGap    the largest gap in millis between merged states
+	 * @param minStateDuration the duration in millis under which shrinkable
+	 *                         states are absorbed
+	 * @param buildTimeout     the time in millis after which an unfinished
+	 *                         build is dropped
+	 */
+	public IncrementalActivityProcessor(long stateMergeGap, long minStateDuration, long buildTimeout) {
+		this.stateMergeGap = stateMergeGap;
+		this.minStateDuration = minStateDuration;
+		this.builds = new BuildSessionIndex(buildTimeout);
+	}
+
+	public void stateAdded(ActivityTimeline timeline, int row) {
+		// every earlier state has been closed by now
+		complete(timeline);
+		stateSequence++;
+
+		// null states are stored as None
+		if (timeline.getStates().getType(row) != ActivityType.None) {
+			timeline.setPendingStateRow(row);
+			timeline.setPendingStateSequence(stateSequence);
+		}
+	}
+
+	/**
+	 * Compact the last state of a timeline. Called when the state has been
+	 * closed, at the latest when the timeline is handed over to a flush.
+	 *
+	 * @param timeline the timeline
+	 */
+	public void complete(ActivityTimeline timeline) {
+		int row = timeline.getPendingStateRow();
+		if (row == -1) {
+			return;
+		}
+		timeline.setPendingStateRow(-1);
+
+		ActivityStore states = timeline.getStates();
+		int last = timeline.getLastProcessedState();
+		long sequence = timeline.getPendingStateSequence();
+		// states still open, or overlapping the previous one, are kept as they are
+		if (last != -1 && states.getDuration(row) > 0 && states.getStart(row) >= states.getEnd(last)) {
+			long gap = states.getStart(row) - states.getEnd(last);
+			ActivityType lastType = states.getType(last);
+			ActivityType type = states.getType(row);
+			// a gap is only bridged if no other state, of any project, was recorded in it
+			boolean adjacent = gap == 0 || (gap <= stateMergeGap && sequence == timeline.getLastStateSequence() + 1);
+			if ((lastType == type && adjacent) || (gap == 0 && lastType.canExpand() && type.canShrink()
+					&& states.getDuration(row) < minStateDuration)) {
+				states.setEnd(last, states.getEnd(row));
+				timeline.setLastStateSequence(sequence);
+				return;
+			}
+		}
+		timeline.addProcessedState(row);
+		timeline.setLastStateSequence(sequence);
+	}
+
+	public void eventAdded(ActivityTimeline timeline, int row) {
+		ActivityStore events = timeline.getEvents();
+		long currentDate = events.getStart(row);
+
+		if (groupSize > 0 && currentDate != groupDate) {
+			for (int i = 0; i < groupSize; i++) {
+				ActivityStore lastEvents = groupTimelines[i].getEvents();
+				int lastEvent = groupRows[i];
+				if (!isMarker(lastEvents.getType(lastEvent)) && lastEvents.getDuration(lastEvent) == 0) {
+					lastEvents.setEnd(lastEvent, currentDate);
+				}
+				groupTimelines[i] = null;
+			}
+			groupSize = 0;
+		}
+		addToGroup(timeline, row);
+		groupDate = currentDate;
+
+		ActivityType type = events.getType(row);
+		if (isBuildEvent(type)) {
+			if (tryToProcessBuildEvent(timeline, row)) {
+				timeline.addProcessedEvent(row);
+			}
+		} else if (type != ActivityType.Event) {
+			timeline.addProcessedEvent(row);
+		}
+	}
+
+	/**
+	 * Forget the current event timestamp. Called when the recorded timelines
+	 * are handed over to a flush, builds in flight are kept.
+	 *
+	 * @param now the current time in epoch millis
+	 */
+	public void reset(long now) {
+		Arrays.fill(groupTimelines, 0, groupSize, null);
+		groupSize = 0;
+		groupDate = -1;
+		builds.expire(now);
+	}
+
+	private void addToGroup(ActivityTimeline timeline, int row) {
+		if (groupSize == groupRows.length) {
+			groupTimelines = Arrays.copyOf(groupTimelines, groupSize * 2);
+			groupRows = Arrays.copyOf(groupRows, groupSize * 2);
+		}
+		groupTimelines[groupSize] = timeline;
+		groupRows[groupSize++] = row;
+	}
+
+	private boolean tryToProcessBuildEvent(ActivityTimeline timeline, int row) {
+		boolean processed = false;
+		ActivityStore events = timeline.getEvents();
+		ActivityType type = events.getType(row);
+		if (type == ActivityType.BuildProject) {
+			builds.start(timeline.getProjectId(), events.getStart(row));
+		} else if (type == ActivityType.BuildProjectSucceeded || type == ActivityType.BuildProjectFailed
+				|| type == ActivityType.BuildProjectCancelled) {
+			long start = builds.finish(timeline.getProjectId(), events.getStart(row));
+			if (start != -1) {
+				events.setEnd(row, events.getStart(row));
+				events.setStart(row, start);
+
+				processed = true;
+			}
+		} else if (type == ActivityType.BuildSolutionSucceded || type == ActivityType.BuildSolutionFailed
+				|| type == ActivityType.BuildSolutionCancelled) {
+			processed = true;
+		}
+		return processed;
+	}
+
+	private static boolean isBuildEvent(ActivityType type) {
+		return type.getId() >= ActivityType.BuildSolutionFailed.getId()
+				&& type.getId() <= ActivityType.BuildProjectCancelled.getId();
+	}
+
+	private static boolean isMarker(ActivityType type) {
+		// build events only stay open while the project is building
+		return type == ActivityType.Event || (isBuildEvent(type) && type != ActivityType.BuildProject);
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.serialization;
+
+import java.io.IOException;
+
+import com.codealike.client.eclipse.internal.dto.ActivityInfo;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Local stand-in for the server side of the context table protocol. Reads an
+ * activity payload and puts each referenced context back into its event, so
+ * payloads of either protocol can be checked against the plain
+ * {@link ActivityInfo} layout.
+ */
+public class ContextTableDecoder {
+
+	/**
+	 * Decode an activity payload.
+	 *
+	 * @param payload the JSON payload, with or without a context table
+	 * @return the decoded activity information
+	 * @throws IOException if the payload is not valid
+	 */
+	public static ActivityInfo decode(byte[] payload) throws IOException {
+		ObjectMapper mapper = JsonCodecs.getInstance().getMapper();
+		JsonNode root = mapper.readTree(payload);
+		if (!root.isObject()) {
+			throw new IOException("Expected an activity object.");
+		}
+
+		JsonNode contexts = ((ObjectNode) root).remove("contexts");
+		if (contexts != null) {
+			for (JsonNode event : root.path("events")) {
+				JsonNode index = event.get("context");
+				if (index == null || !index.isInt()) {
+					continue;
+				}
+				JsonNode context = contexts.get(index.intValue());
+				if (context == null) {
+					throw new IOException(String.format("Unknown context index %d.", index.intValue()));
+				}
+				((ObjectNode) event).set("context", context);
+			}
+		}
+		return JsonCodecs.getInstance().getActivityInfoReader().readValue(root);
+	}
+}
@@ -4,7 +4,6 @@ import java.io.IOException;
 
 import org.joda.time.DateTime;
 
-import com.codealike.client.eclipse.internal.startup.PluginContext;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonSerializer;
@@ -17,8 +16,8 @@ public class DateTimeSerializer extends JsonSerializer<DateTime> {
 	public void serialize(DateTime dateTime, JsonGenerator jgen, SerializerProvider provider) throws IOException,
 			JsonProcessingException {
 //		jgen.writeString(String.format("/Date(%d)/", dateTime.getMillis()));
-		String formattedDate = PluginContext.getInstance().getDateTimeFormatter().print(dateTime);
-		jgen.writeString(formattedDate);
+		char[] buffer = TimeCodec.buffer();
+		jgen.writeString(buffer, 0, TimeCodec.writeDate(dateTime.getMillis(), buffer, 0));
 	}
 
 }
@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.serialization;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+/**
+ * Writes a duration in millis in the same layout as {@link PeriodSerializer}.
+ */
+public class DurationMillisSerializer extends JsonSerializer<Long> {
+
+	@Override
+	public void serialize(Long millis, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+		char[] buffer = TimeCodec.buffer();
+		jgen.writeString(buffer, 0, TimeCodec.writeDuration(millis, buffer, 0));
+	}
+}
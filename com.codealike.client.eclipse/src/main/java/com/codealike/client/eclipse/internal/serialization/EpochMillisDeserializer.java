@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.serialization;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+/**
+ * Reads a date written by {@link EpochMillisSerializer} as epoch millis.
+ */
+public class EpochMillisDeserializer extends JsonDeserializer<Long> {
+
+	@Override
+	public Long deserialize(JsonParser jsonParser, DeserializationContext context) throws IOException {
+		if (jsonParser.getCurrentToken() == JsonToken.VALUE_STRING) {
+			return TimeCodec.parseDate(jsonParser.getTextCharacters(), jsonParser.getTextOffset(),
+					jsonParser.getTextLength());
+		}
+		throw context.instantiationException(Long.class, "Expected string value to parse a date");
+	}
+}
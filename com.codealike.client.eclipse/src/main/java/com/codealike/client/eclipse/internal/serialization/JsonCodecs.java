@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.serialization;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.codealike.client.eclipse.internal.dto.ActivityInfo;
+import com.codealike.client.eclipse.internal.dto.PluginSettingsInfo;
+import com.codealike.client.eclipse.internal.dto.ProfileInfo;
+import com.codealike.client.eclipse.internal.dto.SolutionContextInfo;
+import com.codealike.client.eclipse.internal.dto.UserConfigurationInfo;
+import com.codealike.client.eclipse.internal.model.GlobalSettings;
+import com.codealike.client.eclipse.internal.model.ProjectSettings;
+import com.codealike.client.eclipse.internal.utils.LogManager;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+
+/**
+ * Shared JSON codecs. The mappers are configured once and every DTO gets an
+ * {@link ObjectReader} or {@link ObjectWriter} with its root serializer
+ * resolved up front, so network calls and settings files never pay for
+ * introspection. Readers and writers are immutable and thread safe.
+ */
+public class JsonCodecs {
+	// activity payloads and cache files
+	private final ObjectMapper mapper;
+	// server responses
+	private final ObjectMapper apiMapper;
+	// plugin, user and project settings
+	private final ObjectMapper settingsMapper;
+
+	private final ObjectWriter solutionContextWriter;
+	private final ObjectReader activityInfoReader;
+	private final ObjectWriter activityInfoWriter;
+	private final ObjectReader pluginSettingsReader;
+	private final ObjectReader globalSettingsReader;
+	private final ObjectWriter globalSettingsWriter;
+	private final ObjectReader projectSettingsReader;
+	private final ObjectWriter projectSettingsWriter;
+	// server response readers by response type
+	private final Map<Class<?>, ObjectReader> apiReaders;
+
+	// built on first use by the class loader, so lookups take no lock
+	private static class Holder {
+		private static final JsonCodecs INSTANCE = new JsonCodecs();
+	}
+
+	public static JsonCodecs getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Build the codecs on a background thread, so the first request does not
+	 * wait for them.
+	 */
+	public static void warmUp() {
+		Thread thread = new Thread("Codealike JSON warm up") {
+			public void run() {
+				try {
+					getInstance();
+				} catch (Throwable t) {
+					LogManager.INSTANCE.logError(t, "Could not prepare JSON codecs.");
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private JsonCodecs() {
+		this.mapper = new ObjectMapper();
+		this.mapper.registerModule(new JodaPeriodModule());
+		this.mapper.setSerializationInclusion(Include.NON_NULL);
+
+		this.apiMapper = new ObjectMapper();
+		this.apiMapper.registerModule(new JodaModule());
+
+		this.settingsMapper = new ObjectMapper();
+
+		this.solutionContextWriter = mapper.writerFor(SolutionContextInfo.class);
+		this.activityInfoReader = mapper.readerFor(ActivityInfo.class);
+		this.activityInfoWriter = mapper.writerFor(ActivityInfo.class);
+		this.pluginSettingsReader = settingsMapper.readerFor(PluginSettingsInfo.class);
+		this.globalSettingsReader = settingsMapper.readerFor(GlobalSettings.class);
+		this.globalSettingsWriter = settingsMapper.writerFor(GlobalSettings.class);
+		this.projectSettingsReader = settingsMapper.readerFor(ProjectSettings.class);
+		this.projectSettingsWriter = settingsMapper.writerFor(ProjectSettings.class);
+
+		Map<Class<?>, ObjectReader> readers = new HashMap<Class<?>, ObjectReader>();
+		readers.put(ProfileInfo.class, apiMapper.readerFor(ProfileInfo.class));
+		readers.put(SolutionContextInfo.class, apiMapper.readerFor(SolutionContextInfo.class));
+		readers.put(UserConfigurationInfo.class, apiMapper.readerFor(UserConfigurationInfo.class));
+		this.apiReaders = Collections.unmodifiableMap(readers);
+	}
+
+	/**
+	 * Get the mapper used for activity payloads.
+	 *
+	 * @return the mapper
+	 */
+	public ObjectMapper getMapper() {
+		return mapper;
+	}
+
+	public ObjectWriter getSolutionContextWriter() {
+		return solutionContextWriter;
+	}
+
+	public ObjectReader getActivityInfoReader() {
+		return activityInfoReader;
+	}
+
+	public ObjectWriter getActivityInfoWriter() {
+		return activityInfoWriter;
+	}
+
+	public ObjectReader getPluginSettingsReader() {
+		return pluginSettingsReader;
+	}
+
+	public ObjectReader getGlobalSettingsReader() {
+		return globalSettingsReader;
+	}
+
+	public ObjectWriter getGlobalSettingsWriter() {
+		return globalSettingsWriter;
+	}
+
+	public ObjectReader getProjectSettingsReader() {
+		return projectSettingsReader;
+	}
+
+	public ObjectWriter getProjectSettingsWriter() {
+		return projectSettingsWriter;
+	}
+
+	/**
+	 * Get the reader for a server response.
+	 *
+	 * @param type the response type
+	 * @return the reader
+	 */
+	public ObjectReader getApiReader(Class<?> type) {
+		ObjectReader reader = apiReaders.get(type);
+		return reader != null ? reader : apiMapper.readerFor(type);
+	}
+}
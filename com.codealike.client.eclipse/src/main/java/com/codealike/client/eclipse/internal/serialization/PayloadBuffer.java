@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.serialization;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Reusable in-memory buffer for serialized payloads. The buffer keeps its
+ * capacity between payloads unless a payload made it grow beyond
+ * {@link #MAX_RETAINED_CAPACITY}. A payload is encoded once and its bytes are
+ * written as they are to the request.
+ */
+public class PayloadBuffer extends ByteArrayOutputStream {
+	public static final int INITIAL_CAPACITY = 64 * 1024;
+	public static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+	public PayloadBuffer() {
+		super(INITIAL_CAPACITY);
+	}
+
+	@Override
+	public synchronized void reset() {
+		super.reset();
+		if (buf.length > MAX_RETAINED_CAPACITY) {
+			buf = new byte[INITIAL_CAPACITY];
+		}
+	}
+}
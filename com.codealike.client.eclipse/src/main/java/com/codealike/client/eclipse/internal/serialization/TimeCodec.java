@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.serialization;
+
+import org.joda.time.Period;
+
+import com.codealike.client.eclipse.internal.startup.PluginContext;
+
+/**
+ * Hand-rolled codec for the fixed-width date and duration layouts used on the
+ * wire, {@code yyyy-MM-ddTHH:mm:ss.SSSZ} in UTC and {@code HH:mm:ss.SSS}.
+ * Values are written into and parsed out of char buffers without creating
+ * strings, formatters or calendar objects. The output is the same as the
+ * {@link PluginContext#getDateTimeFormatter()} and
+ * {@link PeriodSerializer#FORMATER} output, which are still used for values
+ * outside the fixed layouts.
+ */
+public final class TimeCodec {
+	public static final int DATE_LENGTH = 24;
+	// hours of a long duration take up to 16 digits
+	public static final int MAX_LENGTH = 32;
+
+	private static final long DAY = 24 * 60 * 60 * 1000;
+	// days from 0000-03-01 to 1970-01-01
+	private static final long EPOCH_SHIFT = 719468;
+	private static final long MIN_DATE = -62167219200000L; // 0000-01-01
+	private static final long MAX_DATE = 253402300799999L; // 9999-12-31
+
+	// duration fields and the separators that follow them
+	private static final long[] DURATION_UNITS = { 3600000, 60000, 1000, 1 };
+	private static final char[] DURATION_SEPARATORS = { ':', ':', '.' };
+
+	private static final ThreadLocal<char[]> BUFFERS = new ThreadLocal<char[]>() {
+
+		@Override
+		protected char[] initialValue() {
+			return new char[MAX_LENGTH];
+		}
+	};
+
+	private TimeCodec() {
+	}
+
+	/**
+	 * Get a buffer of {@link #MAX_LENGTH} chars owned by the calling thread.
+	 *
+	 * @return the buffer
+	 */
+	public static char[] buffer() {
+		return BUFFERS.get();
+	}
+
+	/**
+	 * Write a date in UTC.
+	 *
+	 * @param millis the date in epoch millis
+	 * @param buffer the buffer to write to, with at least {@link #MAX_LENGTH}
+	 *               chars from offset
+	 * @param offset the position of the first char
+	 * @return the number of chars written
+	 */
+	public static int writeDate(long millis, char[] buffer, int offset) {
+		if (millis < MIN_DATE || millis > MAX_DATE) {
+			return copy(PluginContext.getInstance().getDateTimeFormatter().print(millis), buffer, offset);
+		}
+		long days = Math.floorDiv(millis, DAY);
+		int timeOfDay = (int) Math.floorMod(millis, DAY);
+
+		// civil date from days, see http://howardhinnant.github.io/date_algorithms.html
+		long shifted = days + EPOCH_SHIFT;
+		long era = Math.floorDiv(shifted, 146097);
+		int dayOfEra = (int) (shifted - era * 146097);
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int shiftedMonth = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+		int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+		int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+		write4(year, buffer, offset);
+		buffer[offset + 4] = '-';
+		write2(month, buffer, offset + 5);
+		buffer[offset + 7] = '-';
+		write2(day, buffer, offset + 8);
+		buffer[offset + 10] = 'T';
+		write2(timeOfDay / 3600000, buffer, offset + 11);
+		buffer[offset + 13] = ':';
+		write2(timeOfDay / 60000 % 60, buffer, offset + 14);
+		buffer[offset + 16] = ':';
+		write2(timeOfDay / 1000 % 60, buffer, offset + 17);
+		buffer[offset + 19] = '.';
+		write3(timeOfDay % 1000, buffer, offset + 20);
+		buffer[offset + 23] = 'Z';
+		return DATE_LENGTH;
+	}
+
+	/**
+	 * Write a duration as hours, minutes, seconds and millis, each with at least
+	 * two digits.
+	 *
+	 * @param millis the duration in millis
+	 * @param buffer the buffer to write to, with at least {@link #MAX_LENGTH}
+	 *               chars from offset
+	 * @param offset the position of the first char
+	 * @return the number of chars written
+	 */
+	public static int writeDuration(long millis, char[] buffer, int offset) {
+		if (millis < 0) {
+			return copy(PeriodSerializer.FORMATER.print(new Period(millis)), buffer, offset);
+		}
+		int position = writeNumber(millis / 3600000, buffer, offset);
+		buffer[position++] = ':';
+		position = writeNumber(millis / 60000 % 60, buffer, position);
+		buffer[position++] = ':';
+		position = writeNumber(millis / 1000 % 60, buffer, position);
+		buffer[position++] = '.';
+		position = writeNumber(millis % 1000, buffer, position);
+		return position - offset;
+	}
+
+	/**
+	 * Parse a date in UTC. Fractional seconds may have any number of digits and
+	 * the trailing {@code Z} is optional, as in dates sent by the server.
+	 *
+	 * @return the date in epoch millis
+	 * @throws IllegalArgumentException if the text is not a date
+	 */
+	public static long parseDate(char[] text, int offset, int length) {
+		int end = offset + length;
+		if (length < 19 || text[offset + 4] != '-' || text[offset + 7] != '-' || text[offset + 10] != 'T'
+				|| text[offset + 13] != ':' || text[offset + 16] != ':') {
+			return parseDateFallback(text, offset, length);
+		}
+		int year = digits(text, offset, 4);
+		int month = digits(text, offset + 5, 2);
+		int day = digits(text, offset + 8, 2);
+		int hours = digits(text, offset + 11, 2);
+		int minutes = digits(text, offset + 14, 2);
+		int seconds = digits(text, offset + 17, 2);
+
+		int position = offset + 19;
+		int millis = 0;
+		if (position < end && text[position] == '.') {
+			position++;
+			int scale = 100;
+			while (position < end && text[position] >= '0' && text[position] <= '9') {
+				millis += (text[position++] - '0') * scale;
+				scale /= 10;
+			}
+		}
+		if (position < end && text[position] == 'Z') {
+			position++;
+		}
+		// invalid dates, such as February 31, are rejected by the fallback
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) || hours < 0
+				|| hours > 23 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59 || position != end) {
+			return parseDateFallback(text, offset, length);
+		}
+
+		// days from civil date, see http://howardhinnant.github.io/date_algorithms.html
+		int shiftedYear = month <= 2 ? year - 1 : year;
+		int era = Math.floorDiv(shiftedYear, 400);
+		int yearOfEra = shiftedYear - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		long days = era * 146097L + dayOfEra - EPOCH_SHIFT;
+		return days * DAY + hours * 3600000L + minutes * 60000L + seconds * 1000L + millis;
+	}
+
+	/**
+	 * Parse a duration written by {@link #writeDuration(long, char[], int)}.
+	 *
+	 * @return the duration in millis
+	 * @throws IllegalArgumentException if the text is not a duration
+	 */
+	public static long parseDuration(char[] text, int offset, int length) {
+		int end = offset + length;
+		long total = 0;
+		int position = offset;
+		for (int field = 0; field < DURATION_UNITS.length; field++) {
+			int start = position;
+			long value = 0;
+			while (position < end && text[position] >= '0' && text[position] <= '9') {
+				value = value * 10 + text[position++] - '0';
+			}
+			boolean separated = field == DURATION_SEPARATORS.length ? position == end
+					: position < end && text[position] == DURATION_SEPARATORS[field];
+			if (position == start || !separated) {
+				return parseDurationFallback(text, offset, length);
+			}
+			position++;
+			total += value * DURATION_UNITS[field];
+		}
+		return total;
+	}
+
+	private static long parseDateFallback(char[] text, int offset, int length) {
+		return PluginContext.getInstance().getDateTimeParser().parseMillis(new String(text, offset, length));
+	}
+
+	private static long parseDurationFallback(char[] text, int offset, int length) {
+		return Period.parse(new String(text, offset, length), PeriodSerializer.FORMATER).toStandardDuration()
+				.getMillis();
+	}
+
+	private static int daysInMonth(int year, int month) {
+		if (month == 2) {
+			return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+		}
+		return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+	}
+
+	private static int digits(char[] text, int offset, int count) {
+		int value = 0;
+		for (int i = offset; i < offset + count; i++) {
+			char digit = text[i];
+			if (digit < '0' || digit > '9') {
+				return -1;
+			}
+			value = value * 10 + digit - '0';
+		}
+		return value;
+	}
+
+	private static int writeNumber(long value, char[] buffer, int offset) {
+		if (value < 100) {
+			write2((int) value, buffer, offset);
+			return offset + 2;
+		}
+		int length = 0;
+		for (long rest = value; rest > 0; rest /= 10) {
+			length++;
+		}
+		for (int i = offset + length - 1; i >= offset; i--) {
+			buffer[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		return offset + length;
+	}
+
+	private static void write2(int value, char[] buffer, int offset) {
+		buffer[offset] = (char) ('0' + value / 10);
+		buffer[offset + 1] = (char) ('0' + value % 10);
+	}
+
+	private static void write3(int value, char[] buffer, int offset) {
+		buffer[offset] = (char) ('0' + value / 100);
+		write2(value % 100, buffer, offset + 1);
+	}
+
+	private static void write4(int value, char[] buffer, int offset) {
+		write2(value / 100, buffer, offset);
+		write2(value % 100, buffer, offset + 2);
+	}
+
+	private static int copy(String text, char[] buffer, int offset) {
+		int length = Math.min(text.length(), buffer.length - offset);
+		text.getChars(0, length, buffer, offset);
+		return length;
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.serialization;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary encoding of recorded activity columns. Start timestamps are
+ * encoded as the delta of their delta from the previous start, which is zero
+ * or close to zero for regularly spaced entries, durations and references as
+ * varints and small alphabets, such as activity types or project indices, as
+ * runs of repeated values. Signed values are zigzag encoded, so every value
+ * close to zero takes a single byte.
+ */
+public class TimeSeriesCodec {
+	// longest varint of a 64 bit value
+	public static final int MAX_VARLONG_LENGTH = 10;
+
+	private TimeSeriesCodec() {
+	}
+
+	/**
+	 * Write timestamps as delta-of-deltas. Timestamps are mostly ascending, but a
+	 * paired build event starts before the events recorded ahead of it, so
+	 * deltas may be negative and are zigzag encoded like the rest.
+	 *
+	 * @param stream the stream to write to
+	 * @param values the timestamps
+	 * @param count  the number of timestamps to write
+	 * @throws IOException if writing fails
+	 */
+	public static void writeTimestamps(OutputStream stream, long[] values, int count) throws IOException {
+		long previous = 0;
+		long delta = 0;
+		for (int i = 0; i < count; i++) {
+			long next = values[i] - previous;
+			writeVarLong(stream, zigZag(next - delta));
+			previous = values[i];
+			delta = next;
+		}
+	}
+
+	/**
+	 * Read timestamps written by {@link #writeTimestamps(OutputStream, long[], int)}.
+	 *
+	 * @param stream the stream to read from
+	 * @param values the array to read into
+	 * @param count  the number of timestamps to read
+	 * @throws IOException if the stream is truncated or malformed
+	 */
+	public static void readTimestamps(InputStream stream, long[] values, int count) throws IOException {
+		long previous = 0;
+		long delta = 0;
+		for (int i = 0; i < count; i++) {
+			delta += unZigZag(readVarLong(stream));
+			previous += delta;
+			values[i] = previous;
+		}
+	}
+
+	/**
+	 * Write durations, or any other non negative values, as varints.
+	 *
+	 * @param stream the stream to write to
+	 * @param values the values
+	 * @param count  the number of values to write
+	 * @throws IOException if writing fails
+	 */
+	public static void writeVarLongs(OutputStream stream, long[] values, int count) throws IOException {
+		for (int i = 0; i < count; i++) {
+			writeVarLong(stream, values[i]);
+		}
+	}
+
+	public static void readVarLongs(InputStream stream, long[] values, int count) throws IOException {
+		for (int i = 0; i < count; i++) {
+			values[i] = readVarLong(stream);
+		}
+	}
+
+	/**
+	 * Write values as runs of a value and how many times it repeats.
+	 *
+	 * @param stream the stream to write to
+	 * @param values the values
+	 * @param count  the number of values to write
+	 * @throws IOException if writing fails
+	 */
+	public static void writeRuns(OutputStream stream, int[] values, int count) throws IOException {
+		int from = 0;
+		while (from < count) {
+			int to = from + 1;
+			while (to < count && values[to] == values[from]) {
+				to++;
+			}
+			writeVarLong(stream, zigZag(values[from]));
+			writeVarLong(stream, to - from);
+			from = to;
+		}
+	}
+
+	/**
+	 * Read values written by {@link #writeRuns(OutputStream, int[], int)}.
+	 *
+	 * @param stream the stream to read from
+	 * @param values the array to read into
+	 * @param count  the number of values to read
+	 * @throws IOException if the stream is truncated or a run is too long
+	 */
+	public static void readRuns(InputStream stream, int[] values, int count) throws IOException {
+		int from = 0;
+		while (from < count) {
+			int value = (int) unZigZag(readVarLong(stream));
+			long length = readVarLong(stream);
+			if (length <= 0 || length > count - from) {
+				throw new IOException(String.format("Run of %d values is out of range.", length));
+			}
+			for (int to = from + (int) length; from < to; from++) {
+				values[from] = value;
+			}
+		}
+	}
+
+	public static void writeVarLong(OutputStream stream, long value) throws IOException {
+		while ((value & ~0x7fL) != 0) {
+			stream.write((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		stream.write((int) value);
+	}
+
+	public static long readVarLong(InputStream stream) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = stream.read();
+			if (b < 0) {
+				throw new EOFException("Time series is truncated.");
+			}
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Time series has a malformed varint.");
+	}
+
+	/**
+	 * Put a varint at the position of a buffer, which must have room for
+	 * {@link #MAX_VARLONG_LENGTH} bytes.
+	 */
+	public static void putVarLong(ByteBuffer buffer, long value) {
+		while ((value & ~0x7fL) != 0) {
+			buffer.put((byte) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	public static long getVarLong(ByteBuffer buffer) throws IOException {
+		long value = 0;
+		try {
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = buffer.get();
+				value |= (long) (b & 0x7f) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+		} catch (BufferUnderflowException e) {
+			throw new EOFException("Time series is truncated.");
+		}
+		throw new IOException("Time series has a malformed varint.");
+	}
+
+	public static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	public static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -12,12 +12,12 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResourceChangeEvent;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.ui.PlatformUI;
-import org.joda.time.DateTime;
 import com.codealike.client.eclipse.internal.model.TrackedProjectManager;
 import com.codealike.client.eclipse.internal.startup.PluginContext;
 import com.codealike.client.eclipse.internal.tracking.StateTracker;
 import com.codealike.client.eclipse.internal.tracking.ActivitiesRecorder.FlushResult;
 import com.codealike.client.eclipse.internal.tracking.workspace.WorkspaceChangesListener;
+import com.codealike.client.eclipse.internal.utils.ActivityClock;
 import com.codealike.client.eclipse.internal.utils.LogManager;
 import com.codealike.client.eclipse.internal.utils.TrackingConsole;
 import com.codealike.client.eclipse.internal.utils.WorkbenchUtils;
@@ -37,7 +37,8 @@ public class TrackingService extends BaseService {
 	private StateTracker tracker;
 	private boolean isTracking;
 	private WorkspaceChangesListener changesListener;
-	private DateTime startWorkspaceDate;
+	// epoch millis
+	private long startWorkspaceDate;
 	private PluginContext context;
 	
 	public static TrackingService getInstance() {
@@ -129,6 +130,7 @@ public class TrackingService extends BaseService {
 		
 		// try send last information batch
 		this.flushTrackingInformation();
+		this.tracker.closeJournal();
 		
 		this.trackedProjectManager.stopTracking();
 		ResourcesPlugin.getWorkspace().removeResourceChangeListener(this.changesListener);
@@ -203,7 +205,7 @@ public class TrackingService extends BaseService {
 	}
 	
 	public void setBeforeOpenProjectDate() {
-		this.startWorkspaceDate = DateTime.now();
+		this.startWorkspaceDate = ActivityClock.now();
 	}
 	
 	public boolean isTracking() {
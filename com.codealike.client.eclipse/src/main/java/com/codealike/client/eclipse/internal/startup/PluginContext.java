@@ -25,15 +25,13 @@ import com.codealike.client.eclipse.internal.dto.PluginSettingsInfo;
 import com.codealike.client.eclipse.internal.dto.SolutionContextInfo;
 import com.codealike.client.eclipse.internal.dto.Version;
 import com.codealike.client.eclipse.internal.model.ProjectSettings;
-import com.codealike.client.eclipse.internal.serialization.JodaPeriodModule;
+import com.codealike.client.eclipse.internal.serialization.JsonCodecs;
 import com.codealike.client.eclipse.internal.services.IdentityService;
 import com.codealike.client.eclipse.internal.services.TrackingService;
 import com.codealike.client.eclipse.internal.tracking.code.ContextCreator;
 import com.codealike.client.eclipse.internal.utils.Configuration;
 import com.codealike.client.eclipse.internal.utils.LogManager;
-import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
 
 /**
  * Plugin context singleton.
@@ -45,13 +43,19 @@ import com.fasterxml.jackson.databind.ObjectWriter;
 public class PluginContext {
 
 	public static final String VERSION = "0.4.5";
+	// protocol spoken when the server does not advertise a newer one
+	public static final Version BASE_PROTOCOL = new Version(0, 9);
+	// protocol where events reference a per batch context table
+	public static final Version CONTEXT_TABLE_PROTOCOL = new Version(1, 0);
+	// protocol where uploads may be sent gzip compressed
+	public static final Version COMPRESSED_UPLOAD_PROTOCOL = new Version(1, 1);
 	private static final String PLUGIN_PREFERENCES_QUALIFIER = "com.codealike.client.eclipse";
 	private static PluginContext _instance;
 
 	private String ideName;
 	private Version protocolVersion;
-	private ObjectWriter jsonWriter;
-	private ObjectMapper jsonMapper;
+	// cleared when the server rejects compressed uploads
+	private volatile boolean compressUploads;
 	private ContextCreator contextCreator;
 
 	private DateTimeFormatter dateTimeFormatter;
@@ -75,12 +79,8 @@ public class PluginContext {
 
 	public PluginContext() {
 		DateTimeZone.setDefault(DateTimeZone.UTC);
+		JsonCodecs.warmUp();
 
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.registerModule(new JodaPeriodModule());
-		mapper.setSerializationInclusion(Include.NON_NULL);
-		this.jsonWriter = mapper.writer().withDefaultPrettyPrinter();
-		this.jsonMapper = mapper;
 		this.contextCreator = new ContextCreator();
 		this.dateTimeParser = DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
 		this.dateTimeFormatter = new DateTimeFormatterBuilder().appendYear(4, 4).appendLiteral("-").appendMonthOfYear(2)
@@ -89,7 +89,7 @@ public class PluginContext {
 				.appendMillisOfSecond(3).appendLiteral("Z").toFormatter();
 		this.identityService = IdentityService.getInstance();
 		this.instanceValue = String.valueOf(new Random(DateTime.now().getMillis()).nextInt(Integer.MAX_VALUE) + 1);
-		this.protocolVersion = new Version(0, 9);
+		this.protocolVersion = BASE_PROTOCOL;
 		this.ideName = "eclipse";
 		this.machineName = findLocalHostNameOr("unknown");
 
@@ -101,7 +101,9 @@ public class PluginContext {
 		ApiResponse<PluginSettingsInfo> pluginSettings = ApiClient.getPluginSettings();
 		if (pluginSettings.success()) {
 			this.configuration.loadPluginSettings(pluginSettings.getObject());
+			this.protocolVersion = negotiateProtocol(pluginSettings.getObject().getProtocolVersion());
 		}
+		this.compressUploads = protocolVersion.isAtLeast(COMPRESSED_UPLOAD_PROTOCOL);
 	}
 
 	public Configuration getConfiguration() {
@@ -250,12 +252,8 @@ public class PluginContext {
 		return false;
 	}
 
-	public ObjectWriter getJsonWriter() {
-		return this.jsonWriter;
-	}
-
 	public ObjectMapper getJsonMapper() {
-		return this.jsonMapper;
+		return JsonCodecs.getInstance().getMapper();
 	}
 
 	public ContextCreator getContextCreator() {
@@ -289,4 +287,41 @@ public class PluginContext {
 	public Version getProtocolVersion() {
 		return protocolVersion;
 	}
+
+	/**
+	 * Check if uploads can write event contexts in a context table.
+	 *
+	 * @return true if the negotiated protocol supports context tables
+	 */
+	public boolean supportsContextTable() {
+		return protocolVersion.isAtLeast(CONTEXT_TABLE_PROTOCOL);
+	}
+
+	/**
+	 * Check if uploads can be sent gzip compressed.
+	 *
+	 * @return true if the negotiated protocol supports compressed uploads and
+	 *         the server did not reject one since
+	 */
+	public boolean supportsCompressedUploads() {
+		return compressUploads;
+	}
+
+	/**
+	 * Send uploads uncompressed until the protocol is negotiated again.
+	 */
+	public void rejectCompressedUploads() {
+		this.compressUploads = false;
+	}
+
+	// the newest protocol supported by both the plugin and the server
+	private static Version negotiateProtocol(Version serverVersion) {
+		if (serverVersion != null && serverVersion.isAtLeast(COMPRESSED_UPLOAD_PROTOCOL)) {
+			return COMPRESSED_UPLOAD_PROTOCOL;
+		}
+		if (serverVersion != null && serverVersion.isAtLeast(CONTEXT_TABLE_PROTOCOL)) {
+			return CONTEXT_TABLE_PROTOCOL;
+		}
+		return BASE_PROTOCOL;
+	}
 }
@@ -3,23 +3,26 @@
  */
 package com.codealike.client.eclipse.internal.tracking;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.UnknownHostException;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.UUID;
-
-import org.joda.time.DateTime;
-import org.joda.time.DateTimeComparator;
-import org.joda.time.Period;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.codealike.client.eclipse.api.ApiClient;
 import com.codealike.client.eclipse.api.ApiResponse;
@@ -28,13 +31,24 @@ import com.codealike.client.eclipse.internal.dto.ActivityInfo;
 import com.codealike.client.eclipse.internal.dto.ActivityType;
 import com.codealike.client.eclipse.internal.model.ActivityEvent;
 import com.codealike.client.eclipse.internal.model.ActivityState;
+import com.codealike.client.eclipse.internal.model.ActivityTimeline;
+import com.codealike.client.eclipse.internal.model.CodeContext;
 import com.codealike.client.eclipse.internal.model.NullActivityState;
 import com.codealike.client.eclipse.internal.model.StructuralCodeContext;
+import com.codealike.client.eclipse.internal.processing.ActivityBatch;
+import com.codealike.client.eclipse.internal.processing.ActivityBatchChunker;
+import com.codealike.client.eclipse.internal.processing.ActivityBatchEncoder;
+import com.codealike.client.eclipse.internal.processing.ActivityCacheCodec;
 import com.codealike.client.eclipse.internal.processing.ActivityInfoProcessor;
+import com.codealike.client.eclipse.internal.processing.ActivityRollup;
+import com.codealike.client.eclipse.internal.processing.IncrementalActivityProcessor;
+import com.codealike.client.eclipse.internal.serialization.JsonCodecs;
+import com.codealike.client.eclipse.internal.serialization.PayloadBuffer;
 import com.codealike.client.eclipse.internal.startup.PluginContext;
+import com.codealike.client.eclipse.internal.utils.ActivityClock;
 import com.codealike.client.eclipse.internal.utils.LogManager;
 import com.codealike.client.eclipse.internal.utils.TrackingConsole;
-import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 /**
  * Activity recorder class.
@@ -44,214 +58,619 @@ import com.fasterxml.jackson.databind.ObjectWriter;
  */
 public class ActivitiesRecorder {
 
-	private TreeMap<DateTime, List<ActivityState>> states;
-	private Map<UUID, List<ActivityEvent>> events;
-	private ActivityEvent lastEvent;
-	private DateTime lastStateDate;
+	// capacity of the ingestion ring buffer
+	private static final int INGESTION_CAPACITY = 8192;
+	// how often recorded entries are drained from the ring buffer
+	private static final int DRAIN_INTERVAL = 250;
+
+	// recorded timelines per project
+	private final Map<UUID, RecorderShard> shards = new LinkedHashMap<UUID, RecorderShard>();
+	// shards with states opened at the last state timestamp
+	private final List<RecorderShard> openStateShards = new ArrayList<RecorderShard>();
+	// shard of the last stored event
+	private RecorderShard lastEventShard;
+	// processes rows as they are stored so flush only hands them over
+	private final IncrementalActivityProcessor processor;
+	// latest stored timestamp, entries are stored in time order
+	private long lastRecordedDate = -1;
+	// the last stored state, recreated after a flush
+	private ActivityState lastState;
+	private long lastStateDate = -1;
 	private PluginContext context;
+	private final ActivityRingBuffer<Object> ingestion;
+	// puts drained entries back in timestamp order before they are stored
+	private final ActivityReorderBuffer<Object> reorder;
+	private volatile ScheduledExecutorService drainExecutor;
+	private final Runnable drainTask = new Runnable() {
+
+		@Override
+		public void run() {
+			drainRequested.set(false);
+			try {
+				drain();
+			} catch (Exception e) {
+				TrackingConsole.getInstance().trackMessage("Drain recorded activity error " + e.getMessage());
+			}
+		}
+	};
+	// set while a drain of a full ingestion buffer is pending
+	private final AtomicBoolean drainRequested = new AtomicBoolean();
+	// entries dropped because the ingestion buffer was full
+	private final AtomicLong droppedCount = new AtomicLong();
+	// reorder buffer and dropped counts reported at the last flush
+	private long reportedReordered;
+	private long reportedLate;
+	private long reportedDropped;
+	// splits large batches before they are sent
+	private final ActivityBatchChunker chunker = new ActivityBatchChunker();
+	// serializes the batches to send
+	private final ActivityBatchEncoder encoder;
+	// crash-safe copy of the entries recorded since the last flush
+	private ActivityJournal journal;
+	// journals whose flush is done, reused for the next flushes
+	private final List<ActivityJournal> spareJournals = new ArrayList<ActivityJournal>();
+	// journal files opened so far and the generation of the latest journal
+	private int journalCount;
+	private int journalGeneration;
 
 	public ActivitiesRecorder(PluginContext context) {
-		this.states = new TreeMap<DateTime, List<ActivityState>>(DateTimeComparator.getInstance());
-		this.events = new HashMap<UUID, List<ActivityEvent>>();
+		this.ingestion = new ActivityRingBuffer<Object>(INGESTION_CAPACITY);
+		this.reorder = new ActivityReorderBuffer<Object>(context.getConfiguration().getReorderWatermark());
 		this.context = context;
+		this.processor = new IncrementalActivityProcessor(context.getConfiguration().getStateMergeGap(),
+				context.getConfiguration().getMinStateDuration(), context.getConfiguration().getBuildTimeout());
+		this.encoder = new ActivityBatchEncoder(context.getJsonMapper().getFactory());
+		openJournal();
+		recoverJournals();
 	}
 
-	public synchronized ActivityState recordState(ActivityState state) {
-		ActivityState lastStateOfAllStates = null;
-		List<ActivityState> lastStates = null;
-		DateTime currentDate = state.getCreationTime();
+	/**
+	 * Start the background task that moves published states and events into the
+	 * recorder timelines.
+	 */
+	public void startDraining() {
+		if (this.drainExecutor != null)
+			return;
 
-		if (lastStateDate != null && !lastStateDate.equals(currentDate)) {
-			lastStates = states.get(lastStateDate);
+		synchronized (this) {
+			if (this.journal == null) {
+				// tracking starts again after the journal was closed
+				openJournal();
+			}
 		}
 
-		if (states.get(currentDate) == null) {
-			states.put(currentDate, new LinkedList<ActivityState>());
-			lastStateDate = currentDate;
+		ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+		executor.scheduleWithFixedDelay(drainTask, DRAIN_INTERVAL, DRAIN_INTERVAL, TimeUnit.MILLISECONDS);
+		this.drainExecutor = executor;
+	}
+
+	public void stopDraining() {
+		ScheduledExecutorService executor = this.drainExecutor;
+		if (executor != null) {
+			executor.shutdownNow();
+			this.drainExecutor = null;
 		}
-		states.get(currentDate).add(state);
+		drainAll();
+	}
 
-		if (lastStates != null && !lastStates.isEmpty()) {
-			lastStateOfAllStates = lastStates.get(lastStates.size() - 1);
+	/**
+	 * Record a state. Does not block: the state is published to the ingestion
+	 * buffer and added to the timeline by the drain task.
+	 *
+	 * @param state the state to record
+	 */
+	public void recordState(ActivityState state) {
+		publish(state);
+	}
 
-			for (ActivityState lastState : lastStates) {
-				if (lastState != null && lastState.getDuration().equals(Period.ZERO)) {
-					lastState.setDuration(new Period(lastState.getCreationTime(), currentDate));
+	public void recordStates(List<? extends ActivityState> states) {
+		for (ActivityState activityState : states) {
+			publish(activityState);
+		}
+	}
 
-					if (!(lastState instanceof NullActivityState)) {
-						TrackingConsole.getInstance().trackState(lastState);
-					}
-				}
+	/**
+	 * Record an event. Does not block: the event is published to the ingestion
+	 * buffer and added to the timeline by the drain task.
+	 *
+	 * @param event the event to record
+	 */
+	public void recordEvent(ActivityEvent event) {
+		publish(event);
+	}
+
+	/**
+	 * Publish an entry without ever waiting on the recorder, which a flush may
+	 * hold for a while. If the buffer is full the entry is dropped, counted
+	 * and the drain task is asked to run now.
+	 */
+	private void publish(Object entry) {
+		if (ingestion.offer(entry)) {
+			return;
+		}
+		droppedCount.incrementAndGet();
+		ScheduledExecutorService executor = this.drainExecutor;
+		if (executor != null && drainRequested.compareAndSet(false, true)) {
+			try {
+				executor.execute(drainTask);
+			} catch (RejectedExecutionException e) {
+				// draining stopped meanwhile
+				drainRequested.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Move published entries to the reorder buffer and store the ones older than
+	 * the watermark.
+	 */
+	private synchronized void drain() {
+		Object entry;
+		while ((entry = ingestion.poll()) != null) {
+			reorder.add(timeOf(entry), entry);
+		}
+		long now = ActivityClock.now();
+		while ((entry = reorder.poll(now)) != null) {
+			store(entry);
+		}
+		if (journal != null) {
+			journal.commit();
+		}
+	}
+
+	/**
+	 * Store every published entry, without waiting for the watermark.
+	 */
+	private synchronized void drainAll() {
+		drain();
+		Object entry;
+		while ((entry = reorder.pollAny()) != null) {
+			store(entry);
+		}
+		if (journal != null) {
+			journal.commit();
+		}
+	}
+
+	private static long timeOf(Object entry) {
+		if (entry instanceof ActivityState) {
+			return ((ActivityState) entry).getCreationTime();
+		}
+		return ((ActivityEvent) entry).getCreationTime();
+	}
+
+	private void store(Object entry) {
+		if (entry instanceof ActivityState) {
+			ActivityState state = (ActivityState) entry;
+			// null states are kept as None so processing can drop them
+			ActivityType type = state instanceof NullActivityState ? ActivityType.None : state.getType();
+			appendState(state.getCreationTime(), type, state.getProjectId());
+			lastState = state;
+		} else if (entry instanceof ActivityEvent) {
+			ActivityEvent event = (ActivityEvent) entry;
+			appendEvent(event.getCreationTime(), event.getType(), event.getProjectId(),
+					event.getContext());
+			TrackingConsole.getInstance().trackEvent(event);
+		}
+	}
+
+	private void appendState(long date, ActivityType type, UUID projectId) {
+		date = ordered(date);
+		if (journal != null) {
+			journal.appendState(date, type, projectId);
+		}
+		storeState(date, type, projectId);
+	}
+
+	private void appendEvent(long date, ActivityType type, UUID projectId, CodeContext context) {
+		date = ordered(date);
+		if (journal != null) {
+			journal.appendEvent(date, type, projectId, context);
+		}
+		storeEvent(date, type, projectId, context.getId());
+	}
+
+	/**
+	 * Entries are timestamped on the thread that creates them. The reorder
+	 * buffer fixes the order of entries arriving within the watermark, later
+	 * ones are moved to the latest stored timestamp to keep the timelines
+	 * ordered.
+	 */
+	private long ordered(long date) {
+		if (date < lastRecordedDate) {
+			return lastRecordedDate;
+		}
+		lastRecordedDate = date;
+		return date;
+	}
+
+	private void storeState(long currentDate, ActivityType type, UUID projectId) {
+		if (lastStateDate != currentDate) {
+			// close the states that were open until now
+			for (RecorderShard shard : openStateShards) {
+				shard.closeStates(currentDate);
 			}
+			openStateShards.clear();
+			lastStateDate = currentDate;
+		}
+		RecorderShard shard = shard(projectId);
+		shard.addState(currentDate, type);
+		if (!openStateShards.contains(shard)) {
+			openStateShards.add(shard);
 		}
 
 		// If the current event cannot span multiple states then we set its duration to
 		// finish now.
-		if (lastStateDate != null && lastEvent != null && !lastEvent.canSpan()) {
-			// Duration = State.EndTime - Event.StartTime;
-			lastEvent.setDuration(new Period(lastEvent.getCreationTime(), currentDate));
+		if (lastEventShard != null) {
+			lastEventShard.closeLastEvent(currentDate);
+		}
+	}
 
-			if (lastEvent.getType() != ActivityType.Event) {
-				recordEvent(new ActivityEvent(lastEvent.getProjectId(), ActivityType.Event,
-						StructuralCodeContext.createNullContext()));
+	/**
+	 * Close the open states with null states. Only projects with an open state,
+	 * or with the last event, get one, so this does not depend on how many
+	 * projects are tracked.
+	 */
+	private void closeOpenStates() {
+		List<UUID> projectIds = new ArrayList<UUID>(openStateShards.size() + 1);
+		for (RecorderShard shard : openStateShards) {
+			if (shard.hasOpenState()) {
+				projectIds.add(shard.getProjectId());
 			}
 		}
+		if (projectIds.isEmpty() && lastEventShard != null) {
+			// a state is still needed to close the last event
+			projectIds.add(lastEventShard.getProjectId());
+		}
+		long now = ActivityClock.now();
+		for (UUID projectId : projectIds) {
+			appendState(now, ActivityType.None, projectId);
+		}
+	}
 
-		return lastStateOfAllStates;
+	private void storeEvent(long date, ActivityType type, UUID projectId, int contextId) {
+		lastEventShard = shard(projectId);
+		lastEventShard.addEvent(date, type, contextId);
 	}
 
-	private ActivityEvent getLastEvent(UUID projectId) {
-		ActivityEvent lastEvent = null;
-		List<ActivityEvent> projectEvents = getProjectEvents(projectId);
+	private RecorderShard shard(UUID projectId) {
+		RecorderShard shard = shards.get(projectId);
+		if (shard == null) {
+			shard = new RecorderShard(projectId, processor);
+			shards.put(projectId, shard);
+		}
+		return shard;
+	}
 
-		if (projectEvents != null && !projectEvents.isEmpty()) {
-			lastEvent = projectEvents.get(projectEvents.size() - 1);
+	/**
+	 * Delete the journals of this instance. Called once the last flush handed
+	 * the recorded activity over, a journal is opened again if draining starts
+	 * again.
+	 */
+	public synchronized void closeJournal() {
+		if (this.journal != null) {
+			this.journal.close();
+			this.journal = null;
+		}
+		for (ActivityJournal spare : spareJournals) {
+			spare.close();
 		}
+		spareJournals.clear();
+	}
 
-		return lastEvent;
+	/**
+	 * Open the journal of this instance.
+	 */
+	private void openJournal() {
+		this.journal = nextJournal();
 	}
 
-	public synchronized ActivityState recordStates(List<? extends ActivityState> states) {
-		ActivityState lastState = null;
-		for (ActivityState activityState : states) {
-			lastState = recordState(activityState);
+	/**
+	 * Get a journal for the entries recorded from now on, reusing the journal of
+	 * a finished flush if there is one.
+	 */
+	private ActivityJournal nextJournal() {
+		if (!spareJournals.isEmpty()) {
+			ActivityJournal spare = spareJournals.remove(spareJournals.size() - 1);
+			spare.start(++journalGeneration);
+			return spare;
+		}
+		File instanceFolder = context.getConfiguration().getInstancePath();
+		if (instanceFolder == null) {
+			return null;
+		}
+		try {
+			return ActivityJournal.open(instanceFolder, journalCount++, ++journalGeneration);
+		} catch (IOException e) {
+			LogManager.INSTANCE.logWarn(e, "Could not open activity journal, recorded activity will not survive a crash.");
+			return null;
 		}
-		return lastState;
 	}
 
-	private List<ActivityEvent> getProjectEvents(UUID projectId) {
-		if (events.get(projectId) == null) {
-			events.put(projectId, new LinkedList<ActivityEvent>());
+	/**
+	 * Discard the journal of a flush once its entries were sent or cached.
+	 */
+	private synchronized void releaseJournal(ActivityJournal flushed) {
+		if (flushed == null) {
+			return;
+		}
+		if (this.journal == null) {
+			// the journals were closed while the flush ran
+			flushed.close();
+		} else {
+			flushed.discard();
+			spareJournals.add(flushed);
 		}
-		return events.get(projectId);
 	}
 
-	public synchronized ActivityEvent recordEvent(ActivityEvent event) {
-		ActivityEvent lastEventForThisProject = null;
-		List<ActivityEvent> projectEvents = getProjectEvents(event.getProjectId());
+	/**
+	 * Replay the journals left behind by instances that did not shut down
+	 * cleanly.
+	 */
+	private void recoverJournals() {
+		File instanceFolder = context.getConfiguration().getInstancePath();
+		if (instanceFolder == null) {
+			return;
+		}
 
-		lastEventForThisProject = getLastEvent(event.getProjectId());
+		ActivityJournal.recover(instanceFolder, new ActivityJournal.RecordVisitor() {
 
-		projectEvents.add(event);
+			@Override
+			public void visitState(long start, ActivityType type, UUID projectId) {
+				appendState(start, type, projectId);
+			}
 
-		TrackingConsole.getInstance().trackEvent(event);
+			@Override
+			public void visitEvent(long start, ActivityType type, UUID projectId, CodeContext context) {
+				appendEvent(start, type, projectId, context);
+			}
 
-		lastEvent = event;
+			@Override
+			public void endOfJournal(long lastStart) {
+				// the instance died there, close whatever was still open
+				closeRecovered(ordered(lastStart));
+			}
+		});
 
-		return lastEventForThisProject;
+		if (journal != null) {
+			journal.commit();
+		}
+	}
+
+	/**
+	 * Report how many entries arrived out of order, or after the watermark, and
+	 * how many were dropped since the last flush.
+	 */
+	private void reportReordering() {
+		long reordered = reorder.getReorderedCount() - reportedReordered;
+		long late = reorder.getLateCount() - reportedLate;
+		long dropped = droppedCount.get() - reportedDropped;
+		if (reordered > 0) {
+			TrackingConsole.getInstance().trackMessage(
+					String.format("%d entries arrived out of order and were stored in order", reordered));
+		}
+		if (late > 0) {
+			LogManager.INSTANCE.logInfo(String.format(
+					"%d entries arrived after the reorder watermark and were moved to the latest timestamp", late));
+		}
+		if (dropped > 0) {
+			LogManager.INSTANCE.logWarn(
+					String.format("%d entries were dropped because the recorder could not keep up", dropped));
+		}
+		reportedReordered += reordered;
+		reportedLate += late;
+		reportedDropped += dropped;
+	}
+
+	/**
+	 * Close the states and the last event of a replayed journal at the time its
+	 * instance died, so the downtime is not recorded as activity. The entries
+	 * are closed explicitly because the last state may start at that time.
+	 */
+	private void closeRecovered(long date) {
+		for (RecorderShard shard : openStateShards) {
+			shard.closeStates(date);
+		}
+		openStateShards.clear();
+		lastStateDate = date;
+		if (lastEventShard != null) {
+			lastEventShard.closeLastEvent(date);
+		}
+		// a marker event also ends the events that can span states
+		appendEvent(date, ActivityType.Event, PluginContext.UNASSIGNED_PROJECT,
+				StructuralCodeContext.createNullContext());
 	}
 
 	public FlushResult flush(String username, String token) throws UnknownHostException {
-		TreeMap<DateTime, List<ActivityState>> statesToSend = null;
-		TreeMap<DateTime, List<ActivityEvent>> eventsToSend = null;
+		List<ActivityTimeline> timelinesToSend = new ArrayList<ActivityTimeline>();
 
 		ActivityState lastState;
+		ActivityJournal flushedJournal;
 		synchronized (this) {
-			lastState = this.recordStates(ActivityState.createNullState());
-
-			statesToSend = this.states;
-			eventsToSend = flattenEvents(this.events);
-
-			this.states = new TreeMap<DateTime, List<ActivityState>>(DateTimeComparator.getInstance());
-			this.events = new HashMap<UUID, List<ActivityEvent>>();
+			drainAll();
+			reportReordering();
+			lastState = this.lastState;
+			closeOpenStates();
+
+			for (RecorderShard shard : shards.values()) {
+				ActivityTimeline timeline = shard.swap();
+				if (!timeline.isEmpty()) {
+					timelinesToSend.add(timeline);
+				}
+			}
+			// shards are created again for the projects active after the flush
+			this.shards.clear();
+			this.openStateShards.clear();
+			this.lastEventShard = null;
+			this.processor.reset(this.lastRecordedDate);
+			// the swapped entries stay journaled until they are sent or cached
+			flushedJournal = this.journal;
+			if (flushedJournal != null) {
+				flushedJournal.commit();
+				this.journal = nextJournal();
+			}
 		}
 
 		if (lastState != null && !(lastState instanceof NullActivityState)) {
 			this.recordState(lastState.recreate());
 		}
+		try {
+			return flushTimelines(timelinesToSend, username, token);
+		} finally {
+			releaseJournal(flushedJournal);
+		}
+	}
+
+	private FlushResult flushTimelines(List<ActivityTimeline> timelinesToSend, String username, String token) {
+		ActivityRollup.getInstance().add(timelinesToSend);
 
-		ActivityInfoProcessor processor = new ActivityInfoProcessor(statesToSend, eventsToSend);
+		ActivityInfoProcessor processor = new ActivityInfoProcessor(timelinesToSend);
 
 		if (!processor.isValid()) {
 			return FlushResult.Skip;
 		}
 
-		List<ActivityInfo> activityInfoList = processor.getSerializableEntities(context.getMachineName(),
-				context.getInstanceValue(), context.getIdeName(), context.getPluginVersion());
+		List<ActivityBatch> batches = processor.getBatches(context.getMachineName(), context.getInstanceValue(),
+				context.getIdeName(), context.getPluginVersion());
 
-		if (!processor.isActivityValid(activityInfoList)) {
+		if (!processor.isActivityValid(batches)) {
 			return FlushResult.Skip;
 		}
-		FlushResult result = FlushResult.Succeded;
-		for (ActivityInfo info : activityInfoList) {
-			if (!info.isValid()) {
-				continue;
+		// large batches are sent, cached and retried as smaller chunks
+		List<ActivityBatch> chunks = new ArrayList<ActivityBatch>();
+		for (ActivityBatch batch : batches) {
+			if (batch.isValid()) {
+				chunks.addAll(chunker.split(batch));
 			}
-			File cacheFolder = context.getConfiguration().getCachePath();
-			if (cacheFolder == null) {
-				LogManager.INSTANCE.logError("Could not access cache folder. It might not be created.");
-				continue;
-			}
-			FlushResult intermediateResult = trySendEntries(info, username, token);
-			if (intermediateResult == FlushResult.Succeded) {
-				for (final File fileEntry : cacheFolder.listFiles()) {
-					trySendEntriesOnFile(fileEntry.getName(), username, token);
-				}
+		}
+
+		FlushResult result = FlushResult.Succeded;
+		File cacheFolder = context.getConfiguration().getCachePath();
+		if (cacheFolder == null) {
+			LogManager.INSTANCE.logError("Could not access cache folder. It might not be created.");
+			return result;
+		}
 
-				if (context.getConfiguration().getTrackSent()) {
-					// String filename = String.format("%s\\%s%s", cacheFolder.getAbsolutePath(),
-					// info.getBatchId(), ".sent");
-					File historyFile = context.getConfiguration().getHistoryFile();
-
-					FileOutputStream stream = null;
-					try {
-						stream = new FileOutputStream(historyFile);
-						ObjectWriter writer = context.getJsonWriter();
-						String json = writer.writeValueAsString(info);
-						stream.write(json.getBytes(Charset.forName("UTF-8")));
-					} catch (Exception e) {
-						LogManager.INSTANCE.logError(e, "There was a problem trying to store activity data locally.");
-					} finally {
-						if (stream != null) {
-							try {
-								stream.close();
-							} catch (IOException e) {
-								e.printStackTrace();
-							}
-						}
+		// large flushes are encoded a window of batches at a time, in parallel
+		int window = encoder.getWindowSize(chunks);
+		boolean contextTable = context.supportsContextTable();
+		// payloads of this flush, the encoder buffers are only held while encoding
+		PayloadBuffer[] payloads = new PayloadBuffer[window];
+		PayloadBuffer cacheBuffer = new PayloadBuffer();
+		for (int from = 0; from < chunks.size(); from += window) {
+			List<ActivityBatch> batchWindow = chunks.subList(from, Math.min(from + window, chunks.size()));
+			PayloadBuffer[] encoded = new PayloadBuffer[batchWindow.size()];
+			synchronized (encoder) {
+				PayloadBuffer[] shared = encoder.encode(batchWindow, contextTable);
+				for (int i = 0; i < shared.length; i++) {
+					if (shared[i] != null) {
+						encoded[i] = handOff(shared[i], payloads, i);
 					}
 				}
-			} else {
+			}
+			for (int i = 0; i < encoded.length; i++) {
+				FlushResult intermediateResult = flushBatch(batchWindow.get(i), encoded[i], cacheBuffer,
+						cacheFolder, username, token);
+				if (intermediateResult != FlushResult.Succeded && intermediateResult != FlushResult.Skip) {
+					result = intermediateResult;
+				}
+			}
+		}
+		return result;
+	}
+
+	// copies an encoded payload into the buffer of this flush at the given index
+	private static PayloadBuffer handOff(PayloadBuffer encoded, PayloadBuffer[] payloads, int index) {
+		if (payloads[index] == null) {
+			payloads[index] = new PayloadBuffer();
+		}
+		payloads[index].reset();
+		try {
+			encoded.writeTo(payloads[index]);
+		} catch (IOException e) {
+			LogManager.INSTANCE.logError(e, "Could not copy encoded activity batch.");
+			return null;
+		}
+		return payloads[index];
+	}
+
+	private FlushResult flushBatch(ActivityBatch batch, PayloadBuffer encoded, PayloadBuffer cacheBuffer,
+			File cacheFolder, String username, String token) {
+		FlushResult intermediateResult = trySendEntries(encoded, username, token);
+		if (intermediateResult == FlushResult.Succeded) {
+			for (final File fileEntry : cacheFolder.listFiles()) {
+				trySendEntriesOnFile(fileEntry.getName(), cacheBuffer, username, token);
+			}
+
+			if (context.getConfiguration().getTrackSent()) {
 				// String filename = String.format("%s\\%s%s", cacheFolder.getAbsolutePath(),
-				// info.getBatchId(), activityLogExtension);
-				File cacheFile = context.getConfiguration().getCacheFile();
+				// info.getBatchId(), ".sent");
+				storeBatch(batch, context.getConfiguration().getHistoryFile(batch.getBatchId()));
+			}
+		} else {
+			// String filename = String.format("%s\\%s%s", cacheFolder.getAbsolutePath(),
+			// info.getBatchId(), activityLogExtension);
+			storeBatch(batch, context.getConfiguration().getCacheFile(batch.getBatchId()));
+		}
 
-				FileOutputStream stream = null;
+		return intermediateResult;
+	}
+
+	// history and offline batches are kept as compact binary records
+	private void storeBatch(ActivityBatch batch, File file) {
+		OutputStream stream = null;
+		try {
+			stream = new BufferedOutputStream(new FileOutputStream(file));
+			ActivityCacheCodec.write(batch, stream);
+		} catch (Exception e) {
+			LogManager.INSTANCE.logError(e, "There was a problem trying to store activity data locally.");
+		} finally {
+			if (stream != null) {
 				try {
-					stream = new FileOutputStream(cacheFile);
-					ObjectWriter writer = context.getJsonWriter();
-					String json = writer.writeValueAsString(info);
-					stream.write(json.getBytes(Charset.forName("UTF-8")));
-				} catch (Exception e) {
-					LogManager.INSTANCE.logError(e, "There was a problem trying to store activity data locally.");
-				} finally {
-					if (stream != null) {
-						try {
-							stream.close();
-						} catch (IOException e) {
-							e.printStackTrace();
-						}
-					}
+					stream.close();
+				} catch (IOException e) {
+					e.printStackTrace();
 				}
 			}
+		}
+	}
 
-			if (intermediateResult != FlushResult.Succeded && intermediateResult != FlushResult.Skip) {
-				result = intermediateResult;
+	private PayloadBuffer readCachedBatch(File file, PayloadBuffer cacheBuffer) throws IOException {
+		cacheBuffer.reset();
+		InputStream stream = new BufferedInputStream(new FileInputStream(file));
+		try {
+			if (ActivityCacheCodec.isRecord(stream)) {
+				JsonGenerator generator = context.getJsonMapper().getFactory().createGenerator(cacheBuffer);
+				ActivityCacheCodec.transcode(stream, generator, context.supportsContextTable());
+				generator.close();
+			} else {
+				// JSON cached by earlier versions
+				ActivityInfo activityInfo = JsonCodecs.getInstance().getActivityInfoReader().readValue(file);
+				JsonCodecs.getInstance().getActivityInfoWriter().writeValue(cacheBuffer, activityInfo);
 			}
+		} finally {
+			stream.close();
 		}
-		return result;
+		return cacheBuffer;
 	}
 
-	private void trySendEntriesOnFile(String fileName, String username, String token) {
+	private void trySendEntriesOnFile(String fileName, PayloadBuffer cacheBuffer, String username, String token) {
 		try {
 			FlushResult result = FlushResult.Skip;
 			File fileEntry = new File(context.getConfiguration().getCachePath(), fileName);
 			try {
-				ActivityInfo activityInfo = context.getJsonMapper().readValue(new FileInputStream(fileEntry),
-						ActivityInfo.class);
+				PayloadBuffer payload;
+				try {
+					payload = readCachedBatch(fileEntry, cacheBuffer);
+				} catch (Exception e) {
+					// unreadable files are moved to the history instead of retried on every flush
+					LogManager.INSTANCE.logError(e, "There was a problem trying to read offline activity data.");
+					result = FlushResult.Report;
+					return;
+				}
 				ApiClient client = ApiClient.tryCreateNew(username, token);
 
-				ApiResponse<String> response = client.postActivityInfo(activityInfo);
+				ApiResponse<String> response = client.postActivityInfo(payload);
 				if (response.success()) {
 					result = FlushResult.Succeded;
 				}
@@ -260,10 +679,10 @@ public class ActivitiesRecorder {
 						|| response.notFound()) {
 					result = FlushResult.Report;
 				}
-			} catch (IOException e) {
+			} catch (Exception e) {
+				// the file is sent again on the next flush
 				LogManager.INSTANCE.logError(e,
 						"There was a problem trying to send offline activity data to the server.");
-				result = FlushResult.Report;
 			}
 
 			finally {
@@ -290,11 +709,14 @@ public class ActivitiesRecorder {
 		}
 	}
 
-	private FlushResult trySendEntries(ActivityInfo info, String username, String token) {
+	private FlushResult trySendEntries(PayloadBuffer payload, String username, String token) {
+		if (payload == null) {
+			return FlushResult.Report;
+		}
 		try {
 			ApiClient client = ApiClient.tryCreateNew(username, token);
 
-			ApiResponse<String> response = client.postActivityInfo(info);
+			ApiResponse<String> response = client.postActivityInfo(payload);
 			if (!response.success()) {
 				LogManager.INSTANCE.logWarn(String.format(
 						"There was a problem trying to send activity data to the server (Status: %s). "
@@ -313,27 +735,6 @@ public class ActivitiesRecorder {
 		}
 	}
 
-	private TreeMap<DateTime, List<ActivityEvent>> flattenEvents(Map<UUID, List<ActivityEvent>> events) {
-		TreeMap<DateTime, List<ActivityEvent>> eventsAsMap = new TreeMap<DateTime, List<ActivityEvent>>(
-				DateTimeComparator.getInstance());
-		List<ActivityEvent> flatActivityEvents = new ArrayList<ActivityEvent>();
-
-		for (UUID project : events.keySet()) {
-			List<ActivityEvent> eventsForProject = events.get(project);
-			flatActivityEvents.addAll(eventsForProject);
-		}
-
-		for (ActivityEvent event : flatActivityEvents) {
-			DateTime date = event.getCreationTime();
-			if (eventsAsMap.get(date) == null) {
-				eventsAsMap.put(date, new LinkedList<ActivityEvent>());
-			}
-			eventsAsMap.get(date).add(event);
-		}
-
-		return eventsAsMap;
-	}
-
 	public enum FlushResult {
 		Offline, Succeded, Report, Skip
 	}
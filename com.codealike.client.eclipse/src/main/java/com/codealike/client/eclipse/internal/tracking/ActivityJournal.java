@@ -0,0 +1,502 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.tracking;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import com.codealike.client.eclipse.internal.dto.ActivityType;
+import com.codealike.client.eclipse.internal.model.CodeContext;
+import com.codealike.client.eclipse.internal.model.CodeContextDictionary;
+import com.codealike.client.eclipse.internal.serialization.TimeSeriesCodec;
+import com.codealike.client.eclipse.internal.utils.LogManager;
+
+/**
+ * Append-only, memory-mapped journal of recorded states and events. Entries
+ * are written as variable-length binary records into checksummed segments, so
+ * the activity recorded since the last flush can be recovered if Eclipse dies
+ * before it is sent or cached. Writes go to the page cache and are never
+ * forced to disk.
+ * <p>
+ * Every segment starts with a header (magic, generation, used bytes, CRC32 of
+ * the used bytes). Projects and contexts are written once per generation and
+ * referenced by index, entry starts are written as delta-of-deltas with the
+ * {@link TimeSeriesCodec}, so an entry takes a handful of bytes. The journal
+ * is only written by the recorder drain, so it needs no locking of its own.
+ * <p>
+ * A journal holds the entries of one flush. The recorder moves on to another
+ * journal when it swaps its timelines and discards the previous one once its
+ * entries are sent or cached, so an instance may leave several journals
+ * behind. They are replayed in the order of their generations.
+ */
+public class ActivityJournal {
+	private static final String FILE_PREFIX = "activity-";
+	private static final String FILE_EXTENSION = ".journal";
+
+	private static final int MAGIC = 0x434c4a32;
+	private static final int SEGMENT_SIZE = 64 * 1024;
+	private static final int SEGMENTS = 64;
+	private static final int HEADER_SIZE = 16;
+	private static final int SEGMENT_CAPACITY = SEGMENT_SIZE - HEADER_SIZE;
+	// kind, type, start, project and context
+	private static final int MAX_ENTRY_SIZE = 1 + 4 * TimeSeriesCodec.MAX_VARLONG_LENGTH;
+	private static final int PROJECT_SIZE = 17;
+
+	private static final byte STATE = 1;
+	private static final byte EVENT = 2;
+	private static final byte CONTEXT = 3;
+	private static final byte PROJECT = 4;
+
+	private final File journalFile;
+	private final RandomAccessFile file;
+	private final FileLock lock;
+	private MappedByteBuffer buffer;
+	private final CRC32 checksum = new CRC32();
+	// contexts and project indices already written in the current generation
+	private final BitSet journaledContexts = new BitSet();
+	private final Map<UUID, Integer> journaledProjects = new HashMap<UUID, Integer>();
+
+	private int generation;
+	private int segment;
+	// used and committed bytes of the current segment
+	private int used;
+	private int committed;
+	private boolean full;
+	// start and start delta of the last entry, for delta-of-delta encoding
+	private long lastStart;
+	private long lastDelta;
+
+	/**
+	 * Visitor for records read back from a journal.
+	 */
+	public interface RecordVisitor {
+
+		void visitState(long start, ActivityType type, UUID projectId);
+
+		void visitEvent(long start, ActivityType type, UUID projectId, CodeContext context);
+
+		void endOfJournal(long lastStart);
+	}
+
+	/**
+	 * Open a new journal in the given folder. The file stays locked while this
+	 * instance lives so other Eclipse instances do not recover it. Whatever the
+	 * file held before is discarded.
+	 *
+	 * @param folder     the folder of this plugin instance
+	 * @param index      the index of the journal file in the folder
+	 * @param generation the generation of the first records, higher than the
+	 *                   generations of every other journal in the folder
+	 * @return the opened journal
+	 * @throws IOException if the journal could not be created
+	 */
+	public static ActivityJournal open(File folder, int index, int generation) throws IOException {
+		return new ActivityJournal(new File(folder, FILE_PREFIX + index + FILE_EXTENSION), generation);
+	}
+
+	private ActivityJournal(File journalFile, int generation) throws IOException {
+		this.journalFile = journalFile;
+		this.file = new RandomAccessFile(journalFile, "rw");
+		this.file.setLength((long) SEGMENT_SIZE * SEGMENTS);
+		FileChannel channel = this.file.getChannel();
+		this.lock = channel.tryLock();
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) SEGMENT_SIZE * SEGMENTS);
+		discard();
+		start(generation);
+	}
+
+	public void appendState(long start, ActivityType type, UUID projectId) {
+		int project = journalProject(projectId);
+		if (project != -1 && reserve(MAX_ENTRY_SIZE)) {
+			writeEntry(STATE, start, type, project);
+			append();
+		}
+	}
+
+	public void appendEvent(long start, ActivityType type, UUID projectId, CodeContext context) {
+		if (!journaledContexts.get(context.getId())) {
+			if (!appendContext(context)) {
+				return;
+			}
+			journaledContexts.set(context.getId());
+		}
+		int project = journalProject(projectId);
+		if (project != -1 && reserve(MAX_ENTRY_SIZE)) {
+			writeEntry(EVENT, start, type, project);
+			TimeSeriesCodec.putVarLong(buffer, context.getId());
+			append();
+		}
+	}
+
+	// gets the index of a project, writing it first if needed
+	private int journalProject(UUID projectId) {
+		Integer index = journaledProjects.get(projectId);
+		if (index != null) {
+			return index;
+		}
+		if (!reserve(PROJECT_SIZE)) {
+			return -1;
+		}
+		buffer.put(PROJECT);
+		buffer.putLong(projectId.getMostSignificantBits());
+		buffer.putLong(projectId.getLeastSignificantBits());
+		append();
+		journaledProjects.put(projectId, journaledProjects.size());
+		return journaledProjects.size() - 1;
+	}
+
+	private boolean appendContext(CodeContext context) {
+		// context projects are written as index + 1, 0 if there is none
+		int project = 0;
+		if (context.getProjectId() != null) {
+			project = journalProject(context.getProjectId()) + 1;
+			if (project == 0) {
+				return false;
+			}
+		}
+
+		byte[] values;
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream output = new DataOutputStream(bytes);
+			writeString(output, context.getProject());
+			writeString(output, context.getFile());
+			writeString(output, context.getPackageName());
+			writeString(output, context.getClassName());
+			writeString(output, context.getMemberName());
+			values = bytes.toByteArray();
+		} catch (IOException e) {
+			return false;
+		}
+
+		if (!reserve(1 + 3 * TimeSeriesCodec.MAX_VARLONG_LENGTH + values.length)) {
+			return false;
+		}
+		buffer.put(CONTEXT);
+		TimeSeriesCodec.putVarLong(buffer, context.getId());
+		TimeSeriesCodec.putVarLong(buffer, project);
+		TimeSeriesCodec.putVarLong(buffer, values.length);
+		buffer.put(values);
+		append();
+		return true;
+	}
+
+	private void writeEntry(byte kind, long start, ActivityType type, int project) {
+		long delta = start - lastStart;
+		buffer.put(kind);
+		TimeSeriesCodec.putVarLong(buffer, type.getId());
+		TimeSeriesCodec.putVarLong(buffer, TimeSeriesCodec.zigZag(delta - lastDelta));
+		TimeSeriesCodec.putVarLong(buffer, project);
+		lastStart = start;
+		lastDelta = delta;
+	}
+
+	/**
+	 * Make room for a record in the current segment, moving to the next segment
+	 * if it does not fit, and position the buffer where the record goes.
+	 *
+	 * @return false if the journal is full
+	 */
+	private boolean reserve(int size) {
+		if (full) {
+			return false;
+		}
+		if (used + size > SEGMENT_CAPACITY) {
+			commit();
+			if (segment + 1 == SEGMENTS || size > SEGMENT_CAPACITY) {
+				full = true;
+				LogManager.INSTANCE.logWarn("Activity journal is full, recording continues without it.");
+				return false;
+			}
+			startSegment(segment + 1);
+		}
+		buffer.position(segment * SEGMENT_SIZE + HEADER_SIZE + used);
+		return true;
+	}
+
+	// adds the record written since the last reserve to the segment
+	private void append() {
+		used = buffer.position() - segment * SEGMENT_SIZE - HEADER_SIZE;
+	}
+
+	private void startSegment(int index) {
+		segment = index;
+		used = 0;
+		committed = 0;
+		checksum.reset();
+		int base = index * SEGMENT_SIZE;
+		buffer.putInt(base + 4, generation);
+		buffer.putInt(base + 8, 0);
+		buffer.putInt(base + 12, (int) checksum.getValue());
+		buffer.putInt(base, MAGIC);
+	}
+
+	/**
+	 * Make the records appended so far visible to recovery by updating the
+	 * current segment header.
+	 */
+	public void commit() {
+		if (used == committed) {
+			return;
+		}
+		int base = segment * SEGMENT_SIZE;
+		ByteBuffer appended = buffer.duplicate();
+		appended.limit(base + HEADER_SIZE + used);
+		appended.position(base + HEADER_SIZE + committed);
+		checksum.update(appended);
+		buffer.putInt(base + 12, (int) checksum.getValue());
+		buffer.putInt(base + 8, used);
+		committed = used;
+	}
+
+	/**
+	 * Start recording a new generation of records.
+	 *
+	 * @param generation the generation, higher than the generations of every
+	 *                   other journal in the folder
+	 */
+	public void start(int generation) {
+		this.generation = generation;
+		full = false;
+		journaledContexts.clear();
+		journaledProjects.clear();
+		lastStart = 0;
+		lastDelta = 0;
+		startSegment(0);
+	}
+
+	/**
+	 * Drop every record, so recovery finds nothing in this journal. Called once
+	 * the flush sent or cached the activity recorded in it.
+	 */
+	public void discard() {
+		for (int base = 0; base < SEGMENT_SIZE * SEGMENTS; base += SEGMENT_SIZE) {
+			buffer.putInt(base, 0);
+		}
+		full = true;
+	}
+
+	/**
+	 * Discard the records and delete the journal, after the last flush.
+	 */
+	public void close() {
+		discard();
+		buffer = null;
+		try {
+			if (lock != null) {
+				lock.release();
+			}
+			file.close();
+		} catch (IOException e) {
+			LogManager.INSTANCE.logWarn(e, "Could not close activity journal.");
+		}
+		// the mapping may keep the file until it is collected, it is empty anyway
+		journalFile.delete();
+	}
+
+	/**
+	 * Replay the journals left behind by plugin instances that did not shut down
+	 * cleanly, then delete them.
+	 *
+	 * @param instanceFolder the folder of this plugin instance
+	 * @param visitor        the visitor receiving the recovered records
+	 */
+	public static void recover(File instanceFolder, RecordVisitor visitor) {
+		File[] instances = instanceFolder.getParentFile().listFiles();
+		if (instances == null) {
+			return;
+		}
+		for (File instance : instances) {
+			File[] journalFiles = instance.listFiles(new FilenameFilter() {
+
+				@Override
+				public boolean accept(File dir, String name) {
+					return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_EXTENSION);
+				}
+			});
+			if (instance.equals(instanceFolder) || journalFiles == null || journalFiles.length == 0) {
+				continue;
+			}
+			try {
+				List<ByteBuffer> contents = new ArrayList<ByteBuffer>(journalFiles.length);
+				for (File journalFile : journalFiles) {
+					ByteBuffer content = read(journalFile);
+					if (content == null) {
+						// still in use by a running instance
+						contents = null;
+						break;
+					}
+					contents.add(content);
+				}
+				if (contents == null) {
+					continue;
+				}
+				// the instance moved on to a new journal at every flush
+				Collections.sort(contents, new Comparator<ByteBuffer>() {
+
+					@Override
+					public int compare(ByteBuffer left, ByteBuffer right) {
+						return Integer.compare(generationOf(left), generationOf(right));
+					}
+				});
+				for (ByteBuffer content : contents) {
+					replay(content, visitor);
+				}
+				for (File journalFile : journalFiles) {
+					journalFile.delete();
+				}
+				instance.delete();
+			} catch (Exception e) {
+				LogManager.INSTANCE.logWarn(e, "Could not recover activity journals of " + instance.getPath());
+			}
+		}
+	}
+
+	// reads a journal, or returns null if another instance holds it
+	private static ByteBuffer read(File journalFile) throws IOException {
+		RandomAccessFile input = new RandomAccessFile(journalFile, "rw");
+		try {
+			FileChannel channel = input.getChannel();
+			FileLock lock;
+			try {
+				lock = channel.tryLock();
+			} catch (OverlappingFileLockException e) {
+				lock = null;
+			}
+			if (lock == null) {
+				return null;
+			}
+			ByteBuffer content = ByteBuffer.allocate((int) Math.min(channel.size(), (long) SEGMENT_SIZE * SEGMENTS));
+			while (content.hasRemaining() && channel.read(content) != -1) {
+			}
+			lock.release();
+			content.flip();
+			return content;
+		} finally {
+			input.close();
+		}
+	}
+
+	// journals without a valid first segment hold no records
+	private static int generationOf(ByteBuffer content) {
+		return content.limit() >= HEADER_SIZE && content.getInt(0) == MAGIC ? content.getInt(4) : Integer.MIN_VALUE;
+	}
+
+	private static void replay(ByteBuffer content, RecordVisitor visitor) {
+		Map<Integer, CodeContext> contexts = new HashMap<Integer, CodeContext>();
+		List<UUID> projects = new ArrayList<UUID>();
+		CRC32 checksum = new CRC32();
+		long lastStart = -1;
+		long start = 0;
+		long delta = 0;
+		int generation = generationOf(content);
+
+		for (int base = 0; base + SEGMENT_SIZE <= content.limit(); base += SEGMENT_SIZE) {
+			int used = content.getInt(base + 8);
+			if (content.getInt(base) != MAGIC || content.getInt(base + 4) != generation || used <= 0
+					|| used > SEGMENT_CAPACITY) {
+				break;
+			}
+			ByteBuffer records = content.duplicate();
+			records.position(base + HEADER_SIZE);
+			records.limit(base + HEADER_SIZE + used);
+			checksum.reset();
+			checksum.update(records);
+			if ((int) checksum.getValue() != content.getInt(base + 12)) {
+				LogManager.INSTANCE.logWarn("Activity journal segment is corrupted, recovery stops there.");
+				break;
+			}
+
+			records.position(base + HEADER_SIZE);
+			try {
+				while (records.hasRemaining()) {
+					byte kind = records.get();
+					if (kind == PROJECT) {
+						projects.add(new UUID(records.getLong(), records.getLong()));
+						continue;
+					}
+					if (kind == CONTEXT) {
+						int id = (int) TimeSeriesCodec.getVarLong(records);
+						int project = readIndex(records, projects.size() + 1);
+						byte[] values = new byte[readIndex(records, records.remaining() + 1)];
+						records.get(values);
+						contexts.put(id, readContext(project == 0 ? null : projects.get(project - 1), values));
+						continue;
+					}
+					if (kind != STATE && kind != EVENT) {
+						throw new IOException(String.format("Unknown activity journal record %d.", kind));
+					}
+
+					ActivityType type = ActivityType.fromId((int) TimeSeriesCodec.getVarLong(records));
+					delta += TimeSeriesCodec.unZigZag(TimeSeriesCodec.getVarLong(records));
+					start += delta;
+					UUID projectId = projects.get(readIndex(records, projects.size()));
+					if (kind == STATE) {
+						visitor.visitState(start, type, projectId);
+					} else {
+						CodeContext context = contexts.get((int) TimeSeriesCodec.getVarLong(records));
+						if (context != null) {
+							visitor.visitEvent(start, type, projectId, context);
+						}
+					}
+					lastStart = Math.max(lastStart, start);
+				}
+			} catch (Exception e) {
+				// the records replayed so far are kept, the journal is dropped
+				LogManager.INSTANCE.logWarn(e, "Activity journal segment is malformed, recovery stops there.");
+				break;
+			}
+		}
+
+		if (lastStart != -1) {
+			visitor.endOfJournal(lastStart);
+		}
+	}
+
+	private static CodeContext readContext(UUID projectId, byte[] values) throws IOException {
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(values));
+		return CodeContextDictionary.getInstance().intern(projectId, readString(input), readString(input),
+				readString(input), readString(input), readString(input));
+	}
+
+	// context values may be null
+	private static void writeString(DataOutputStream output, String value) throws IOException {
+		output.writeBoolean(value != null);
+		if (value != null) {
+			output.writeUTF(value);
+		}
+	}
+
+	private static String readString(DataInputStream input) throws IOException {
+		return input.readBoolean() ? input.readUTF() : null;
+	}
+
+	private static int readIndex(ByteBuffer records, int size) throws IOException {
+		long index = TimeSeriesCodec.getVarLong(records);
+		if (index < 0 || index >= size) {
+			throw new IOException(String.format("Activity journal index %d is out of range.", index));
+		}
+		return (int) index;
+	}
+}
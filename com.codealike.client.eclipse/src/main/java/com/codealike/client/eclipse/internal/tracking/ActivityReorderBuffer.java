@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.tracking;
+
+import java.util.Arrays;
+
+/**
+ * Holds recorded entries for a short watermark so entries timestamped on
+ * different threads are released in timestamp order. Entries are kept sorted
+ * in a ring of parallel arrays. They almost always arrive in order, so an
+ * insertion only compares with the newest entries. Entries with the same
+ * timestamp keep their arrival order. Only accessed by the recorder drain.
+ */
+public class ActivityReorderBuffer<E> {
+	private final long watermark;
+
+	private long[] times = new long[64];
+	private Object[] entries = new Object[64];
+	private int head;
+	private int size;
+
+	// newest timestamp added so far
+	private long newest = Long.MIN_VALUE;
+	// newest timestamp released so far
+	private long released = Long.MIN_VALUE;
+	// entries that arrived out of order and were put back in order
+	private long reordered;
+	// entries that arrived after newer entries had already been released
+	private long late;
+
+	/**
+	 * Reorder buffer constructor
+	 *
+	 * @param watermark how long in millis entries are held before release
+	 */
+	public ActivityReorderBuffer(long watermark) {
+		this.watermark = watermark;
+	}
+
+	/**
+	 * Add an entry.
+	 *
+	 * @param time  the entry timestamp in epoch millis
+	 * @param entry the entry
+	 */
+	public void add(long time, E entry) {
+		if (size == times.length) {
+			grow();
+		}
+		if (time < released) {
+			late++;
+		} else if (time < newest) {
+			reordered++;
+		}
+		newest = Math.max(newest, time);
+
+		int mask = times.length - 1;
+		int position = size++;
+		while (position > 0 && times[(head + position - 1) & mask] > time) {
+			int from = (head + position - 1) & mask;
+			int to = (head + position) & mask;
+			times[to] = times[from];
+			entries[to] = entries[from];
+			position--;
+		}
+		times[(head + position) & mask] = time;
+		entries[(head + position) & mask] = entry;
+	}
+
+	/**
+	 * Take the oldest entry if it is older than the watermark.
+	 *
+	 * @param now the current time in epoch millis
+	 * @return the entry, or null if there is none ready
+	 */
+	public E poll(long now) {
+		if (size == 0 || times[head] > now - watermark) {
+			return null;
+		}
+		return take();
+	}
+
+	/**
+	 * Take the oldest entry, regardless of the watermark.
+	 *
+	 * @return the entry, or null if the buffer is empty
+	 */
+	public E pollAny() {
+		return size > 0 ? take() : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private E take() {
+		E entry = (E) entries[head];
+		released = Math.max(released, times[head]);
+		entries[head] = null;
+		head = (head + 1) & (times.length - 1);
+		size--;
+		return entry;
+	}
+
+	private void grow() {
+		long[] grownTimes = new long[times.length * 2];
+		Object[] grownEntries = new Object[times.length * 2];
+		for (int i = 0; i < size; i++) {
+			grownTimes[i] = times[(head + i) & (times.length - 1)];
+			grownEntries[i] = entries[(head + i) & (times.length - 1)];
+		}
+		Arrays.fill(entries, null);
+		times = grownTimes;
+		entries = grownEntries;
+		head = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long getReorderedCount() {
+		return reordered;
+	}
+
+	public long getLateCount() {
+		return late;
+	}
+}
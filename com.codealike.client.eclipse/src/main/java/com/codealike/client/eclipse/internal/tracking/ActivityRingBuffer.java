@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.tracking;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer/single-consumer ring buffer. Listener threads publish
+ * recorded entries into pre-sized slots without taking any lock, and a single
+ * consumer drains them in publication order.
+ */
+public class ActivityRingBuffer<E> {
+	// the pre-sized slots holding published entries
+	private final Object[] slots;
+	// per slot sequence used to hand the slot between producers and consumer
+	private final AtomicLongArray sequences;
+	private final int mask;
+	// next position to be claimed by a producer
+	private final AtomicLong tail = new AtomicLong();
+	// next position to be read, only accessed by the consumer
+	private long head;
+
+	/**
+	 * Ring buffer constructor.
+	 *
+	 * @param capacity the minimum number of slots, rounded up to a power of two
+	 */
+	public ActivityRingBuffer(int capacity) {
+		int size = 2;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		this.slots = new Object[size];
+		this.sequences = new AtomicLongArray(size);
+		this.mask = size - 1;
+		for (int i = 0; i < size; i++) {
+			this.sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Publish an entry. Safe to call from any number of threads.
+	 *
+	 * @param entry the entry to publish
+	 * @return true if published, false if the buffer is full
+	 */
+	public boolean offer(E entry) {
+		long position = tail.get();
+		int index;
+		while (true) {
+			index = (int) (position & mask);
+			long difference = sequences.get(index) - position;
+			if (difference == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					break;
+				}
+				position = tail.get();
+			} else if (difference < 0) {
+				return false;
+			} else {
+				position = tail.get();
+			}
+		}
+		slots[index] = entry;
+		sequences.lazySet(index, position + 1);
+		return true;
+	}
+
+	/**
+	 * Take the oldest published entry. Must only be called by one thread at a
+	 * time.
+	 *
+	 * @return the entry or null if nothing has been published
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		int index = (int) (head & mask);
+		if (sequences.get(index) != head + 1) {
+			return null;
+		}
+		E entry = (E) slots[index];
+		slots[index] = null;
+		sequences.lazySet(index, head + slots.length);
+		head++;
+		return entry;
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.tracking;
+
+import java.util.UUID;
+
+import com.codealike.client.eclipse.internal.dto.ActivityType;
+import com.codealike.client.eclipse.internal.model.ActivityStore;
+import com.codealike.client.eclipse.internal.model.ActivityTimeline;
+import com.codealike.client.eclipse.internal.model.StructuralCodeContext;
+import com.codealike.client.eclipse.internal.processing.IncrementalActivityProcessor;
+import com.codealike.client.eclipse.internal.utils.TrackingConsole;
+
+/**
+ * Recorder shard holding the timeline of a single project and the bookkeeping
+ * needed to close its open states and events. Shards are only written by the
+ * recorder drain, which also feeds every new row to the incremental
+ * processor.
+ */
+public class RecorderShard {
+	private final UUID projectId;
+	private final IncrementalActivityProcessor processor;
+	private ActivityTimeline timeline;
+	// row of the last stored event, or -1
+	private int lastEventRow = -1;
+	// start of the state rows that are still open
+	private int lastStateRow;
+
+	public RecorderShard(UUID projectId, IncrementalActivityProcessor processor) {
+		this.projectId = projectId;
+		this.processor = processor;
+		this.timeline = new ActivityTimeline(projectId);
+	}
+
+	public UUID getProjectId() {
+		return projectId;
+	}
+
+	public void addState(long date, ActivityType type) {
+		int row = timeline.getStates().add(date, type, projectId, ActivityStore.NO_CONTEXT);
+		processor.stateAdded(timeline, row);
+	}
+
+	/**
+	 * Close the open states of this shard.
+	 *
+	 * @param date the end of the open states in epoch millis
+	 */
+	public void closeStates(long date) {
+		ActivityStore states = timeline.getStates();
+		for (int row = lastStateRow; row < states.size(); row++) {
+			if (states.getDuration(row) == 0) {
+				states.setEnd(row, date);
+
+				if (states.getType(row) != ActivityType.None) {
+					TrackingConsole.getInstance().trackState(states.getType(row), states.getDuration(row));
+				}
+			}
+		}
+		lastStateRow = states.size();
+	}
+
+	/**
+	 * Check if this shard has an open state other than a null state.
+	 *
+	 * @return true if a state is still open
+	 */
+	public boolean hasOpenState() {
+		ActivityStore states = timeline.getStates();
+		for (int row = lastStateRow; row < states.size(); row++) {
+			if (states.getDuration(row) == 0 && states.getType(row) != ActivityType.None) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void addEvent(long date, ActivityType type, int contextId) {
+		lastEventRow = timeline.getEvents().add(date, type, projectId, contextId);
+		processor.eventAdded(timeline, lastEventRow);
+	}
+
+	/**
+	 * Close the last event if it cannot span multiple states.
+	 *
+	 * @param date the date of the new state in epoch millis
+	 */
+	public void closeLastEvent(long date) {
+		ActivityStore events = timeline.getEvents();
+		if (lastEventRow == -1 || canSpan(events.getType(lastEventRow))) {
+			return;
+		}
+		// Duration = State.EndTime - Event.StartTime;
+		// paired build finishes already hold the build duration
+		if (events.getDuration(lastEventRow) == 0) {
+			events.setEnd(lastEventRow, date);
+		}
+
+		if (events.getType(lastEventRow) != ActivityType.Event) {
+			// marker events are derived, they are not journaled
+			addEvent(date, ActivityType.Event, StructuralCodeContext.createNullContext().getId());
+		}
+	}
+
+	/**
+	 * Hand over the recorded timeline and start a new one.
+	 *
+	 * @return the recorded timeline
+	 */
+	public ActivityTimeline swap() {
+		ActivityTimeline recorded = this.timeline;
+		processor.complete(recorded);
+		this.timeline = new ActivityTimeline(projectId);
+		this.lastEventRow = -1;
+		this.lastStateRow = 0;
+		return recorded;
+	}
+
+	private static boolean canSpan(ActivityType type) {
+		return type == ActivityType.DocumentEdit || type == ActivityType.DocumentFocus;
+	}
+}
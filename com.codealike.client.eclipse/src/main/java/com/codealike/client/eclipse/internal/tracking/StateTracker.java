@@ -42,8 +42,6 @@ import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.IWorkbenchPart;
 import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.ui.PlatformUI;
-import org.joda.time.DateTime;
-import org.joda.time.Duration;
 
 import com.codealike.client.eclipse.internal.dto.ActivityType;
 import com.codealike.client.eclipse.internal.model.ActivityEvent;
@@ -58,6 +56,7 @@ import com.codealike.client.eclipse.internal.startup.PluginContext;
 import com.codealike.client.eclipse.internal.tracking.ActivitiesRecorder.FlushResult;
 import com.codealike.client.eclipse.internal.tracking.build.ResourceDeltaVisitor;
 import com.codealike.client.eclipse.internal.tracking.code.ContextCreator;
+import com.codealike.client.eclipse.internal.utils.ActivityClock;
 import com.codealike.client.eclipse.internal.utils.EditorUtils;
 import com.codealike.client.eclipse.internal.utils.LogManager;
 import com.codealike.client.eclipse.internal.utils.TrackingConsole;
@@ -77,7 +76,7 @@ public class StateTracker {
 	private final Display display;
 	private Set<IDocument> registeredDocs;
 	protected IResource currentCompilationUnit;
-	private CodeContext lastCodeContext;
+	private int lastCodeContextId = -1;
 	private ActivityEvent lastEvent;
 	private ContextCreator contextCreator;
 	private ScheduledExecutorService idleDetectionExecutor;
@@ -314,13 +313,13 @@ public class StateTracker {
 			throws JavaModelException {
 		CodeContext currentCodeContext = contextCreator.createCodeContext(editor, projectId);
 
-		if (!focusedResource.equals(currentCompilationUnit) || !currentCodeContext.equals(lastCodeContext)) {
+		if (!focusedResource.equals(currentCompilationUnit) || currentCodeContext.getId() != lastCodeContextId) {
 			ActivityEvent event = new ActivityEvent(projectId, ActivityType.DocumentFocus, currentCodeContext);
 			recorder.recordEvent(event);
 
 			lastEvent = event;
 			currentCompilationUnit = focusedResource;
-			lastCodeContext = currentCodeContext;
+			lastCodeContextId = currentCodeContext.getId();
 		}
 	}
 
@@ -364,7 +363,7 @@ public class StateTracker {
 		});
 	}
 
-	public void startTrackingProject(IProject project, UUID projectId, DateTime startWorkspaceDate) {
+	public void startTrackingProject(IProject project, UUID projectId, long startWorkspaceDate) {
 		ActivityEvent openSolutionEvent = new ActivityEvent(projectId, ActivityType.OpenSolution,
 				contextCreator.createCodeContext(project));
 		openSolutionEvent.setCreationTime(startWorkspaceDate);
@@ -483,6 +482,7 @@ public class StateTracker {
 
 		ResourcesPlugin.getWorkspace().addResourceChangeListener(buildEventsListener,
 				IResourceChangeEvent.PRE_BUILD | IResourceChangeEvent.POST_BUILD);
+		recorder.startDraining();
 		startIdleDetection();
 	}
 
@@ -550,14 +550,14 @@ public class StateTracker {
 		public void handleEvent(Event event) {
 			if (currentState instanceof IdleActivityState) {
 				IdleActivityState state = (IdleActivityState) currentState;
-				DateTime now = DateTime.now();
-				Duration duration = new Duration(state.getLastActivity(), now);
+				long now = ActivityClock.now();
+				long duration = now - state.getLastActivity();
 				state.setLastActivity(now);
 
 				long idleMaxPeriodInSeconds = PluginContext.getInstance().getConfiguration().getIdleMinInterval()
 						/ 1000;
-				Duration idleMinInterval = Duration.standardMinutes(idleMaxPeriodInSeconds / 60);
-				if (duration.compareTo(idleMinInterval) < 0) {
+				long idleMinInterval = TimeUnit.MINUTES.toMillis(idleMaxPeriodInSeconds / 60);
+				if (duration < idleMinInterval) {
 					currentState = ActivityState.createIdleState(PluginContext.UNASSIGNED_PROJECT);
 					recorder.recordState(currentState);
 				}
@@ -571,6 +571,7 @@ public class StateTracker {
 		ResourcesPlugin.getWorkspace().removeResourceChangeListener(buildEventsListener);
 
 		stopIdleDetection();
+		recorder.stopDraining();
 
 		IWorkbench workbench = PlatformUI.getWorkbench();
 		workbench.removeWindowListener(winListener);
@@ -588,6 +589,13 @@ public class StateTracker {
 		}
 	}
 
+	/**
+	 * Release the activity journal, after the last flush.
+	 */
+	public void closeJournal() {
+		recorder.closeJournal();
+	}
+
 	public FlushResult flush(String identity, String token) {
 		try {
 			return this.recorder.flush(identity, token);
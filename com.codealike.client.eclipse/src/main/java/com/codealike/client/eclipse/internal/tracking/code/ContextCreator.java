@@ -12,7 +12,7 @@ import org.eclipse.jdt.internal.ui.javaeditor.JavaEditor;
 import org.eclipse.ui.IEditorPart;
 
 import com.codealike.client.eclipse.internal.model.CodeContext;
-import com.codealike.client.eclipse.internal.model.StructuralCodeContext;
+import com.codealike.client.eclipse.internal.model.CodeContextDictionary;
 import com.codealike.client.eclipse.internal.startup.PluginContext;
 import com.codealike.client.eclipse.internal.utils.CodeContextUtils;
 import com.codealike.client.eclipse.internal.utils.EditorUtils;
@@ -26,24 +26,20 @@ import com.codealike.client.eclipse.internal.utils.EditorUtils;
 @SuppressWarnings("restriction")
 public class ContextCreator {
 
+	private final CodeContextDictionary dictionary = CodeContextDictionary.getInstance();
+
 	public CodeContext createCodeContextInternal(JavaEditor javaEditor, UUID projectId) throws JavaModelException {
 		IJavaElement element = null;
 
 		element = EditorUtils.getJavaSelectedElement(javaEditor);
-		CodeContext context = CodeContextUtils.createCodeContext(element);
-		CodeContextUtils.addFilename(javaEditor, context);
 
-		return context;
+		return CodeContextUtils.createCodeContext(element, CodeContextUtils.getFilename(javaEditor));
 	}
 
 	public CodeContext createCodeContextInternal(IEditorPart editor, UUID projectId) {
 		IProject project = PluginContext.getInstance().getTrackingService().getProject(projectId);
 
-		StructuralCodeContext context = new StructuralCodeContext(projectId);
-		context.setProject(project.getName());
-		CodeContextUtils.addFilename(editor, context);
-
-		return context;
+		return dictionary.intern(projectId, project.getName(), CodeContextUtils.getFilename(editor), "", "", "");
 	}
 
 	public CodeContext createCodeContext(IEditorPart editor, UUID projectId) throws JavaModelException {
@@ -57,10 +53,7 @@ public class ContextCreator {
 	public CodeContext createCodeContext(IProject project) {
 		UUID projectId = PluginContext.getInstance().getTrackingService().getUUID(project);
 
-		StructuralCodeContext context = new StructuralCodeContext(projectId);
-		context.setProject(project.getName());
-
-		return context;
+		return dictionary.intern(projectId, project.getName(), "", "", "", "");
 	}
 
 }
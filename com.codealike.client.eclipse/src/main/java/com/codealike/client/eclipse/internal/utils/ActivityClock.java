@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2022. All rights reserved to Torc LLC.
+ */
+package com.codealike.client.eclipse.internal.utils;
+
+/**
+ * Source of every activity timestamp. The default clock is monotonic: it
+ * pairs a wall clock anchor with {@link System#nanoTime()} deltas, so
+ * durations do not jump when the system time is corrected. Tests, benchmarks
+ * and simulations can install their own clock to drive tracking in virtual
+ * time.
+ */
+public abstract class ActivityClock {
+	private static volatile ActivityClock instance = new MonotonicClock();
+
+	public static ActivityClock getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Install the clock used for new timestamps.
+	 *
+	 * @param clock the clock to use
+	 */
+	public static void setInstance(ActivityClock clock) {
+		instance = clock;
+	}
+
+	/**
+	 * Get the current time from the installed clock.
+	 *
+	 * @return the current time in epoch millis
+	 */
+	public static long now() {
+		return instance.millis();
+	}
+
+	/**
+	 * Get the current time.
+	 *
+	 * @return the current time in epoch millis
+	 */
+	public abstract long millis();
+
+	/**
+	 * Wall clock anchor moved forward with {@link System#nanoTime()} deltas. The
+	 * wall clock is only read at most once per {@link #CHECK_INTERVAL}, and the
+	 * anchor is moved when the wall clock is more than {@link #MAX_DRIFT} ahead,
+	 * for instance after the machine was suspended. A wall clock set back is not
+	 * followed, so the returned times never go backwards and never stall.
+	 */
+	public static class MonotonicClock extends ActivityClock {
+		public static final long MAX_DRIFT = 60 * 1000;
+		public static final long CHECK_INTERVAL = 1000;
+
+		// wall clock anchor minus the nanoTime anchor, in millis, never decreases
+		private volatile long offset;
+		// elapsed millis at which the wall clock is read again
+		private volatile long nextCheck;
+
+		public MonotonicClock() {
+			long elapsed = System.nanoTime() / 1000000;
+			this.offset = System.currentTimeMillis() - elapsed;
+			this.nextCheck = elapsed + CHECK_INTERVAL;
+		}
+
+		@Override
+		public long millis() {
+			long elapsed = System.nanoTime() / 1000000;
+			if (elapsed >= nextCheck) {
+				checkDrift(elapsed);
+			}
+			return elapsed + offset;
+		}
+
+		private synchronized void checkDrift(long elapsed) {
+			if (elapsed < nextCheck) {
+				return;
+			}
+			nextCheck = elapsed + CHECK_INTERVAL;
+			long wall = System.currentTimeMillis();
+			if (wall - (elapsed + offset) > MAX_DRIFT) {
+				offset = wall - elapsed;
+			}
+		}
+	}
+}
@@ -15,7 +15,7 @@ import org.eclipse.jdt.internal.core.JavaElement;
 import org.eclipse.ui.IEditorPart;
 
 import com.codealike.client.eclipse.internal.model.CodeContext;
-import com.codealike.client.eclipse.internal.model.StructuralCodeContext;
+import com.codealike.client.eclipse.internal.model.CodeContextDictionary;
 import com.codealike.client.eclipse.internal.model.exception.NonExistingResourceException;
 import com.codealike.client.eclipse.internal.startup.PluginContext;
 
@@ -62,13 +62,18 @@ public class CodeContextUtils {
 			return "";
 	}
 
-	public static CodeContext createCodeContext(IJavaElement element) {
+	/**
+	 * Create the interned code context for a java element.
+	 *
+	 * @param element  the selected java element
+	 * @param fileName the editor file name, or null to use the element resource
+	 * @return the interned code context
+	 */
+	public static CodeContext createCodeContext(IJavaElement element, String fileName) {
 
 		UUID projectId = PluginContext.getInstance().getTrackingService().getTrackedProjects()
 				.get(element.getJavaProject().getProject());
 
-		StructuralCodeContext context = new StructuralCodeContext(projectId);
-
 		IType classElement = findClass(element);
 		String fullClassName = classElement != null ? classElement.getFullyQualifiedName() : null;
 		String className = "";
@@ -77,31 +82,28 @@ public class CodeContextUtils {
 			className = (splittedClassName.length > 0) ? splittedClassName[splittedClassName.length - 1]
 					: fullClassName;
 		}
-		context.setClassName(className);
 
+		String file = fileName;
 		IResource resource = element.getResource();
-		if (resource != null) {
-			context.setFile(resource.getFullPath().toString());
+		if (file == null) {
+			file = resource != null ? resource.getFullPath().toString() : "";
 		}
 
-		context.setPackageName(findPackageName(element));
-		context.setMemberName(findMemberName(element));
-
-		context.setProject(((IProject) element.getJavaProject().getProject()).getName());
-
-		return context;
+		return CodeContextDictionary.getInstance().intern(projectId,
+				((IProject) element.getJavaProject().getProject()).getName(), file, findPackageName(element),
+				className, findMemberName(element));
 	}
 
-	public static void addFilename(IEditorPart editor, CodeContext context) {
+	public static String getFilename(IEditorPart editor) {
 		try {
 			IResource resource = EditorUtils.getActiveResource(editor);
 			if (resource != null) {
-				String fileName = String.format("%s", resource.getName());
-				context.setFile(fileName);
+				return String.format("%s", resource.getName());
 			}
 		} catch (NonExistingResourceException e) {
 			LogManager.INSTANCE.logError(e, "Trying to find unexisting resource.");
 		}
+		return null;
 	}
 
 }
@@ -7,8 +7,8 @@ import com.codealike.client.eclipse.internal.dto.PluginSettingsInfo;
 import com.codealike.client.eclipse.internal.model.GlobalSettings;
 import com.codealike.client.eclipse.internal.model.PluginSettings;
 import com.codealike.client.eclipse.internal.model.ProjectSettings;
+import com.codealike.client.eclipse.internal.serialization.JsonCodecs;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -20,9 +20,9 @@ import java.text.Format;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Optional;
+import java.util.UUID;
 
 public class Configuration {
-	private ObjectMapper mapper = new ObjectMapper();
 	private GlobalSettings globalSettings = new GlobalSettings();
 	private PluginSettings pluginSettings = new PluginSettings();
 
@@ -59,6 +59,26 @@ public class Configuration {
 		if (newSettings.getIdleMaxPeriod() != 0) {
 			settings.setIdleMaxPeriod(newSettings.getIdleMaxPeriod());
 		}
+
+		if (newSettings.getStateMergeGap() != null) {
+			this.pluginSettings.setStateMergeGap(newSettings.getStateMergeGap());
+		}
+
+		if (newSettings.getMinStateDuration() != null) {
+			this.pluginSettings.setMinStateDuration(newSettings.getMinStateDuration());
+		}
+
+		if (newSettings.getBuildTimeout() != null) {
+			this.pluginSettings.setBuildTimeout(newSettings.getBuildTimeout());
+		}
+
+		if (newSettings.getReorderWatermark() != null) {
+			this.pluginSettings.setReorderWatermark(newSettings.getReorderWatermark());
+		}
+
+		if (newSettings.getCompressionLevel() != null) {
+			this.pluginSettings.setCompressionLevel(newSettings.getCompressionLevel());
+		}
 	}
 
 	/*
@@ -71,9 +91,8 @@ public class Configuration {
 
 		try {
 			if (Files.exists(codealikeSettingsFile.toPath())) {
-				ObjectMapper mapper = new ObjectMapper();
-				GlobalSettings existingConfiguration = mapper.readValue(new FileInputStream(codealikeSettingsFile),
-						GlobalSettings.class);
+				GlobalSettings existingConfiguration = JsonCodecs.getInstance().getGlobalSettingsReader()
+						.readValue(new FileInputStream(codealikeSettingsFile));
 
 				if (existingConfiguration != null) {
 					this.globalSettings.setUserToken(existingConfiguration.getUserToken());
@@ -108,7 +127,7 @@ public class Configuration {
 		FileOutputStream stream = null;
 		try {
 			// convert object to string
-			jsonString = mapper.writeValueAsString(this.globalSettings);
+			jsonString = JsonCodecs.getInstance().getGlobalSettingsWriter().writeValueAsString(this.globalSettings);
 
 			// if registered, save configuration file
 			// have to save configuration file
@@ -137,8 +156,8 @@ public class Configuration {
 
 		try {
 			if (Files.exists(codealikeProjectFile.toPath())) {
-				ObjectMapper mapper = new ObjectMapper();
-				projectSettings = mapper.readValue(new FileInputStream(codealikeProjectFile), ProjectSettings.class);
+				projectSettings = JsonCodecs.getInstance().getProjectSettingsReader()
+						.readValue(new FileInputStream(codealikeProjectFile));
 			}
 		} catch (IOException exception) {
 			// check what to do if this fails
@@ -154,7 +173,7 @@ public class Configuration {
 		FileOutputStream stream = null;
 		try {
 			// convert object to string
-			jsonString = mapper.writeValueAsString(projectSettings);
+			jsonString = JsonCodecs.getInstance().getProjectSettingsWriter().writeValueAsString(projectSettings);
 
 			// if registered, save configuration file
 			// have to save configuration file
@@ -189,14 +208,34 @@ public class Configuration {
 		return this.pluginSettings.getFlushInterval();
 	}
 
-	public File getHistoryFile() {
+	public int getStateMergeGap() {
+		return this.pluginSettings.getStateMergeGap();
+	}
+
+	public int getMinStateDuration() {
+		return this.pluginSettings.getMinStateDuration();
+	}
+
+	public int getBuildTimeout() {
+		return this.pluginSettings.getBuildTimeout();
+	}
+
+	public int getReorderWatermark() {
+		return this.pluginSettings.getReorderWatermark();
+	}
+
+	public int getCompressionLevel() {
+		return this.pluginSettings.getCompressionLevel();
+	}
+
+	public File getHistoryFile(UUID batchId) {
 		Format formatter = new SimpleDateFormat("YYYYMMDDhhmmss");
-		return new File(historyPath, clientId + "-" + formatter.format(new Date()) + ".json");
+		return new File(historyPath, clientId + "-" + formatter.format(new Date()) + "-" + batchId + ".bin");
 	}
 
-	public File getCacheFile() {
+	public File getCacheFile(UUID batchId) {
 		Format formatter = new SimpleDateFormat("YYYYMMDDhhmmss");
-		return new File(cachePath, clientId + "-" + formatter.format(new Date()) + ".json");
+		return new File(cachePath, clientId + "-" + formatter.format(new Date()) + "-" + batchId + ".bin");
 	}
 
 	public boolean getTrackSent() {
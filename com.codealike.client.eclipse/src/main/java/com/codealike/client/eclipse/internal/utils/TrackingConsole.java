@@ -5,9 +5,11 @@ package com.codealike.client.eclipse.internal.utils;
 
 import java.util.UUID;
 
+import org.joda.time.Period;
 import org.joda.time.format.PeriodFormatter;
+
+import com.codealike.client.eclipse.internal.dto.ActivityType;
 import com.codealike.client.eclipse.internal.model.ActivityEvent;
-import com.codealike.client.eclipse.internal.model.ActivityState;
 import com.codealike.client.eclipse.internal.serialization.PeriodSerializer;
 import com.codealike.client.eclipse.internal.startup.PluginContext;
 
@@ -56,11 +58,11 @@ public class TrackingConsole {
 		}
 	}
 
-	public void trackState(ActivityState state) {
+	public void trackState(ActivityType type, long duration) {
 		if (enabled) {
 			PeriodFormatter formatter = PeriodSerializer.FORMATER;
-			System.out.println(String.format("Last recorded state: type:%s, duration:%s\n", state.getType().toString(),
-					state.getDuration().toString(formatter)));
+			System.out.println(String.format("Last recorded state: type:%s, duration:%s\n", type.toString(),
+					new Period(duration).toString(formatter)));
 		}
 	}
 
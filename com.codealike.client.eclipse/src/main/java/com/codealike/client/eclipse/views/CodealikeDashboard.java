@@ -13,6 +13,7 @@ import org.eclipse.swt.widgets.Link;
 import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
 import org.eclipse.ui.part.*;
 import org.eclipse.core.databinding.beans.typed.BeanProperties;
@@ -39,11 +40,15 @@ import org.eclipse.swt.widgets.Menu;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTException;
 
+import java.util.Map;
+
 import com.codealike.client.eclipse.internal.model.TrackedProjectManager;
+import com.codealike.client.eclipse.internal.processing.ActivityRollup;
 import com.codealike.client.eclipse.internal.services.IdentityService;
 import com.codealike.client.eclipse.internal.services.ServiceListener;
 import com.codealike.client.eclipse.internal.services.TrackingService;
 import com.codealike.client.eclipse.internal.startup.PluginContext;
+import com.codealike.client.eclipse.internal.utils.ActivityClock;
 import com.codealike.client.eclipse.internal.utils.Configuration;
 
 /**
@@ -74,6 +79,7 @@ public class CodealikeDashboard extends ViewPart {
 	private Text trackingText;
 	private Clipboard cb;
 	private Composite parentComponent;
+	private Table todayTable;
 	
 	private ServiceListener authObserver = new ServiceListener() {
 		
@@ -108,6 +114,20 @@ public class CodealikeDashboard extends ViewPart {
 		}
 	};	
 
+	private ServiceListener rollupObserver = new ServiceListener() {
+		
+		@Override
+		public void onEvent() {
+			Display.getDefault().asyncExec(new Runnable() {
+				
+				@Override
+				public void run() {
+					showTodayTotals();
+				}
+			});
+		}
+	};
+
 
 	/**
 	 * The constructor.
@@ -117,6 +137,7 @@ public class CodealikeDashboard extends ViewPart {
 		this.context.getIdentityService().addListener(authObserver);
 		this.trackingService = this.context.getTrackingService();
 		this.trackingService.addListener(trackingObserver);
+		ActivityRollup.getInstance().addListener(rollupObserver);
 		
 		this.cb = new Clipboard(Display.getCurrent());
 	}
@@ -231,6 +252,45 @@ public class CodealikeDashboard extends ViewPart {
 		if (context.isAuthenticated()) {
 			showTrackedProjects();
 		}
+		
+		Group todayGroup = new Group(parent, SWT.NONE);
+		todayGroup.setText("Today");
+		todayGroup.setFont(AVENIR_12);
+		GridData todayGridData = new GridData(SWT.FILL, SWT.FILL, false, false);
+		todayGridData.horizontalSpan = 5;
+		todayGroup.setLayoutData(todayGridData);
+		todayGroup.setLayout(new GridLayout(1, false));
+		todayTable = new Table(todayGroup, SWT.NONE);
+		todayTable.setFont(AVENIR_10);
+		new TableColumn(todayTable, SWT.LEFT);
+		new TableColumn(todayTable, SWT.RIGHT);
+		showTodayTotals();
+	}
+	
+	/**
+	 * Show the time spent today on the top projects, classes and activities, from
+	 * the local rollup so it works offline too.
+	 */
+	private void showTodayTotals() {
+		if (todayTable == null || todayTable.isDisposed()) {
+			return;
+		}
+		todayTable.removeAll();
+		ActivityRollup rollup = ActivityRollup.getInstance();
+		long now = ActivityClock.now();
+		addTodayTotals(rollup.getDayTotals(ActivityRollup.Dimension.Project, now, 5));
+		addTodayTotals(rollup.getDayTotals(ActivityRollup.Dimension.Class, now, 5));
+		addTodayTotals(rollup.getDayTotals(ActivityRollup.Dimension.Activity, now, 5));
+		resizeTable(todayTable);
+		todayTable.getParent().layout(true);
+	}
+	
+	private void addTodayTotals(Map<String, Long> totals) {
+		for (Map.Entry<String, Long> total : totals.entrySet()) {
+			long minutes = total.getValue() / 60000;
+			TableItem item = new TableItem(todayTable, SWT.NONE);
+			item.setText(new String[] { total.getKey(), String.format("%dh %02dm", minutes / 60, minutes % 60) });
+		}
 	}
 	
 	private void enableDisableTracking(Composite parent) {
@@ -349,6 +409,12 @@ public class CodealikeDashboard extends ViewPart {
 		return action;
 	}
 
+	@Override
+	public void dispose() {
+		ActivityRollup.getInstance().removeListener(rollupObserver);
+		super.dispose();
+	}
+
 	/**
 	 * Passing the focus request to the viewer's control.
 	 */